@@ -0,0 +1,362 @@
+package com.picasso.Analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.picasso.PetriNet.BitMask;
+
+/**
+ * InvariantAnalyzer class computes the minimal support T-invariants and P-invariants of a Petri net from its incidence matrix.
+ * It uses the Farkas algorithm: every row starts as a row of the matrix extended with an identity row, and each column
+ * of the matrix is eliminated by combining the rows with opposite signs. Rows are sparse, their supports are kept as
+ * bit masks to discard the rows that are not minimal, and the combinations of each column are built in parallel.
+ */
+public class InvariantAnalyzer {
+    // Incidence matrix of the Petri net, places by transitions
+    private final int[][] incidenceMatrix;
+    // Number of places
+    private final int numberOfPlaces;
+    // Number of transitions
+    private final int numberOfTransitions;
+
+    /**
+     * Row class is a sparse row of the Farkas algorithm: the part of the matrix still to eliminate and the combination of the original rows.
+     */
+    private static final class Row {
+        // Columns of the matrix part with non zero values, sorted
+        private final int[] columns;
+        // Values of the matrix part
+        private final long[] values;
+        // Original rows of the combination, sorted
+        private final int[] indexes;
+        // Coefficients of the combination
+        private final long[] coefficients;
+        // Original rows of the combination as a bit mask
+        private final long[] support;
+
+        /**
+         * Constructor for Row class.
+         * @param columns Columns of the matrix part with non zero values, sorted.
+         * @param values Values of the matrix part.
+         * @param indexes Original rows of the combination, sorted.
+         * @param coefficients Coefficients of the combination.
+         * @param size Number of original rows.
+         */
+        private Row(int[] columns, long[] values, int[] indexes, long[] coefficients, int size) {
+            this.columns = columns;
+            this.values = values;
+            this.indexes = indexes;
+            this.coefficients = coefficients;
+            this.support = BitMask.create(size);
+
+            for (int i : indexes)
+                BitMask.set(support, i);
+        }
+
+        /**
+         * Returns the value of the column passed as argument.
+         * @param column Column of the matrix part.
+         * @return Value of the column, 0 if it is not stored.
+         */
+        private long get(int column) {
+            int k = Arrays.binarySearch(columns, column);
+
+            return k < 0 ? 0 : values[k];
+        }
+
+        /**
+         * Checks if the support of this row contains the support of the row passed as argument.
+         * @param other Row to check.
+         * @return True  if every original row of the other row is in this row
+         *         False otherwise
+         */
+        private boolean contains(Row other) {
+            for (int i = 0; i < support.length; i++)
+                if ((other.support[i] & ~support[i]) != 0)
+                    return false;
+
+            return true;
+        }
+    }
+
+    /**
+     * Constructor for InvariantAnalyzer class.
+     * @param incidenceMatrix Incidence matrix of the Petri net, places by transitions.
+     */
+    public InvariantAnalyzer(int[][] incidenceMatrix) {
+        this.incidenceMatrix = incidenceMatrix;
+        this.numberOfPlaces = incidenceMatrix.length;
+        this.numberOfTransitions = numberOfPlaces == 0 ? 0 : incidenceMatrix[0].length;
+    }
+
+    /**
+     * Computes the minimal support T-invariants, the non negative vectors x with C x = 0.
+     * @return List of T-invariants, each one with a weight per transition.
+     */
+    public List<int[]> computeTInvariants() {
+        int[][] transposed = new int[numberOfTransitions][numberOfPlaces];
+
+        for (int p = 0; p < numberOfPlaces; p++)
+            for (int t = 0; t < numberOfTransitions; t++)
+                transposed[t][p] = incidenceMatrix[p][t];
+
+        return farkas(transposed, numberOfPlaces);
+    }
+
+    /**
+     * Computes the minimal support P-invariants, the non negative vectors y with y C = 0.
+     * @return List of P-invariants, each one with a weight per place.
+     */
+    public List<int[]> computePInvariants() {
+        return farkas(incidenceMatrix, numberOfTransitions);
+    }
+
+    /**
+     * Returns the elements of the support of the invariant passed as argument.
+     * @param invariant Invariant to convert.
+     * @return Array with the elements with non zero weight, starting at 1.
+     */
+    public static int[] toSupport(int[] invariant) {
+        return IntStream.range(0, invariant.length)
+                        .filter(i -> invariant[i] != 0)
+                        .map(i -> i + 1)
+                        .toArray();
+    }
+
+    /**
+     * Runs the Farkas algorithm over the matrix passed as argument.
+     * @param matrix Matrix whose left null space is computed, one row per element of the invariants.
+     * @param numberOfColumns Number of columns of the matrix.
+     * @return List of minimal support non negative vectors v with v matrix = 0.
+     */
+    private static List<int[]> farkas(int[][] matrix, int numberOfColumns) {
+        int size = matrix.length;
+        List<Row> rows = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            final int[] row = matrix[i];
+            int[] columns = IntStream.range(0, numberOfColumns).filter(j -> row[j] != 0).toArray();
+            long[] values = Arrays.stream(columns).mapToLong(j -> row[j]).toArray();
+
+            rows.add(new Row(columns, values, new int[]{ i }, new long[]{ 1 }, size));
+        }
+
+        boolean[] eliminated = new boolean[numberOfColumns];
+
+        for (int step = 0; step < numberOfColumns; step++) {
+            int column = nextColumn(rows, eliminated);
+            eliminated[column] = true;
+
+            List<Row> positives = new ArrayList<>();
+            List<Row> negatives = new ArrayList<>();
+            List<Row> next = new ArrayList<>();
+
+            for (Row r : rows) {
+                long v = r.get(column);
+
+                if (v > 0)
+                    positives.add(r);
+                else if (v < 0)
+                    negatives.add(r);
+                else
+                    next.add(r);
+            }
+
+            List<Row> combined = positives.parallelStream()
+                                          .flatMap(p -> negatives.stream().map(n -> combine(p, n, column, size)))
+                                          .collect(Collectors.toList());
+
+            next.addAll(combined);
+            rows = minimal(next);
+        }
+
+        return rows.stream()
+                   .map(r -> toVector(r, size))
+                   .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the column not eliminated yet that generates less combinations.
+     * @param rows Current rows.
+     * @param eliminated Columns already eliminated.
+     * @return Index of the column.
+     */
+    private static int nextColumn(List<Row> rows, boolean[] eliminated) {
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+
+        for (int column = 0; column < eliminated.length; column++) {
+            if (eliminated[column])
+                continue;
+
+            long positives = 0;
+            long negatives = 0;
+
+            for (Row r : rows) {
+                long v = r.get(column);
+
+                if (v > 0)
+                    positives++;
+                else if (v < 0)
+                    negatives++;
+            }
+
+            long cost = positives * negatives - positives - negatives;
+
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = column;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Combines a row with a positive value and a row with a negative value in the column so the column becomes zero.
+     * @param positive Row with a positive value in the column.
+     * @param negative Row with a negative value in the column.
+     * @param column Column to eliminate.
+     * @param size Number of original rows.
+     * @return Combined row, divided by the greatest common divisor of its values.
+     */
+    private static Row combine(Row positive, Row negative, int column, int size) {
+        long a = -negative.get(column);
+        long b = positive.get(column);
+
+        long[] matrixPart = merge(positive.columns, positive.values, a, negative.columns, negative.values, b);
+        long[] combinationPart = merge(positive.indexes, positive.coefficients, a, negative.indexes, negative.coefficients, b);
+
+        int[] columns = unionKeys(positive.columns, negative.columns);
+        int[] indexes = unionKeys(positive.indexes, negative.indexes);
+
+        long gcd = 0;
+
+        for (long v : matrixPart)
+            gcd = gcd(gcd, Math.abs(v));
+
+        for (long v : combinationPart)
+            gcd = gcd(gcd, v);
+
+        int n = 0;
+
+        for (int k = 0; k < columns.length; k++)
+            if (matrixPart[k] != 0)
+                n++;
+
+        int[] compactColumns = new int[n];
+        long[] compactValues = new long[n];
+        n = 0;
+
+        for (int k = 0; k < columns.length; k++) {
+            if (matrixPart[k] != 0) {
+                compactColumns[n] = columns[k];
+                compactValues[n++] = matrixPart[k] / gcd;
+            }
+        }
+
+        for (int k = 0; k < combinationPart.length; k++)
+            combinationPart[k] /= gcd;
+
+        return new Row(compactColumns, compactValues, indexes, combinationPart, size);
+    }
+
+    /**
+     * Returns the sorted union of two sorted arrays.
+     * @param a First array.
+     * @param b Second array.
+     * @return Sorted array with the elements of both arrays, without repetitions.
+     */
+    private static int[] unionKeys(int[] a, int[] b) {
+        int[] union = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j]))
+                union[n++] = a[i++];
+            else if (i == a.length || b[j] < a[i])
+                union[n++] = b[j++];
+            else {
+                union[n++] = a[i++];
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(union, n);
+    }
+
+    /**
+     * Returns the values of the sparse linear combination ka * a + kb * b, in the order of the union of their keys.
+     * @param aKeys Keys of the first vector, sorted.
+     * @param aValues Values of the first vector.
+     * @param ka Factor of the first vector.
+     * @param bKeys Keys of the second vector, sorted.
+     * @param bValues Values of the second vector.
+     * @param kb Factor of the second vector.
+     * @return Values of the combination.
+     */
+    private static long[] merge(int[] aKeys, long[] aValues, long ka, int[] bKeys, long[] bValues, long kb) {
+        long[] merged = new long[aKeys.length + bKeys.length];
+        int i = 0, j = 0, n = 0;
+
+        while (i < aKeys.length || j < bKeys.length) {
+            if (j == bKeys.length || (i < aKeys.length && aKeys[i] < bKeys[j]))
+                merged[n++] = Math.multiplyExact(ka, aValues[i++]);
+            else if (i == aKeys.length || bKeys[j] < aKeys[i])
+                merged[n++] = Math.multiplyExact(kb, bValues[j++]);
+            else
+                merged[n++] = Math.addExact(Math.multiplyExact(ka, aValues[i++]), Math.multiplyExact(kb, bValues[j++]));
+        }
+
+        return Arrays.copyOf(merged, n);
+    }
+
+    /**
+     * Returns the greatest common divisor of two non negative numbers.
+     * @param a First number.
+     * @param b Second number.
+     * @return Greatest common divisor, or the other number if one is zero.
+     */
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+
+        return a;
+    }
+
+    /**
+     * Returns the rows whose support does not contain the support of another row. Of the rows with the same support only one is kept.
+     * @param rows Rows to filter.
+     * @return Rows with minimal support.
+     */
+    private static List<Row> minimal(List<Row> rows) {
+        return IntStream.range(0, rows.size())
+                        .parallel()
+                        .filter(i -> IntStream.range(0, rows.size())
+                                              .noneMatch(j -> j != i && rows.get(i).contains(rows.get(j))
+                                                              && (!rows.get(j).contains(rows.get(i)) || j < i)))
+                        .mapToObj(rows::get)
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * Converts the combination part of a row to a dense vector.
+     * @param row Row to convert.
+     * @param size Number of original rows.
+     * @return Dense vector with the coefficient of each original row.
+     */
+    private static int[] toVector(Row row, int size) {
+        int[] vector = new int[size];
+
+        for (int k = 0; k < row.indexes.length; k++)
+            vector[row.indexes[k]] = Math.toIntExact(row.coefficients[k]);
+
+        return vector;
+    }
+}
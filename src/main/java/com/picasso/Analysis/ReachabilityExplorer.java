@@ -0,0 +1,262 @@
+package com.picasso.Analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.picasso.PetriNet.CompiledPetriNet;
+import com.picasso.PetriNet.PetriNet;
+
+/**
+ * ReachabilityExplorer class enumerates the reachability graph of a Petri net from its initial marking.
+ * The graph is explored level by level; each level is split among the workers of a fork-join pool, which steal
+ * work from each other, and the markings already visited are kept in a concurrent set.
+ * In PARTIAL_ORDER mode only the enabled transitions of a stubborn set are fired from each marking, which keeps
+ * every deadlock but skips most interleavings of independent transitions.
+ */
+public class ReachabilityExplorer {
+    // Number of markings explored by a task without splitting
+    private static final int THRESHOLD = 256;
+
+    /**
+     * Exploration modes enumeration
+     */
+    public enum Mode {
+        // Every interleaving is explored
+        FULL,
+        // Only the transitions of a stubborn set are fired from each marking
+        PARTIAL_ORDER
+    };
+
+    // Compiled Petri net to explore
+    private final CompiledPetriNet net;
+    // Initial marking of the exploration
+    private final int[] initialMarking;
+    // Pool running the exploration tasks
+    private final ForkJoinPool pool;
+    // Maximum number of states to explore
+    private final long maxStates;
+    // Stubborn sets of the net, null when every interleaving is explored
+    private final StubbornSets stubbornSets;
+
+    // Markings already visited
+    private Set<Marking> visited;
+    // Number of markings visited
+    private AtomicLong states;
+    // True if a new marking was dropped because the maximum number of states was reached
+    private AtomicBoolean truncated;
+    // Number of firings explored
+    private LongAdder edges;
+    // Markings without enabled transitions
+    private List<int[]> deadlocks;
+    // Maximum number of tokens reached by each place
+    private AtomicIntegerArray bounds;
+
+    /**
+     * Marking class wraps a marking to be used as a key of the visited set.
+     */
+    private static final class Marking {
+        // Tokens of each place
+        private final int[] tokens;
+        // Hash of the tokens
+        private final int hash;
+
+        /**
+         * Constructor for Marking class.
+         * @param tokens Tokens of each place, the array is not copied.
+         */
+        private Marking(int[] tokens) {
+            this.tokens = tokens;
+            this.hash = Arrays.hashCode(tokens);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Marking && Arrays.equals(tokens, ((Marking) o).tokens);
+        }
+    }
+
+    /**
+     * ExploreTask class explores a range of the current level and returns the markings of the next level.
+     */
+    private final class ExploreTask extends RecursiveTask<List<int[]>> {
+        // Version of the serialized form of the task
+        private static final long serialVersionUID = 1L;
+
+        // Markings of the current level
+        private final List<int[]> level;
+        // First marking of the range
+        private final int from;
+        // Last marking of the range, exclusive
+        private final int to;
+
+        /**
+         * Constructor for ExploreTask class.
+         * @param level Markings of the current level.
+         * @param from First marking of the range.
+         * @param to Last marking of the range, exclusive.
+         */
+        private ExploreTask(List<int[]> level, int from, int to) {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+
+                ExploreTask left = new ExploreTask(level, from, middle);
+                left.fork();
+
+                List<int[]> next = new ExploreTask(level, middle, to).compute();
+                next.addAll(left.join());
+
+                return next;
+            }
+
+            List<int[]> next = new ArrayList<>();
+
+            for (int i = from; i < to; i++)
+                expand(level.get(i), next);
+
+            return next;
+        }
+    }
+
+    /**
+     * Constructor for ReachabilityExplorer class.
+     * @param petriNet Petri net to explore, its initial marking and structure are used.
+     * @param mode Mode of the exploration.
+     * @param parallelism Number of workers of the exploration.
+     * @param maxStates Maximum number of states to explore, the exploration stops after reaching it.
+     */
+    public ReachabilityExplorer(PetriNet petriNet, Mode mode, int parallelism, long maxStates) {
+        this.net = petriNet.getCompiledNet();
+        this.initialMarking = petriNet.getInitialMarking().clone();
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxStates = maxStates;
+        this.stubbornSets = mode == Mode.PARTIAL_ORDER ? new StubbornSets(net) : null;
+    }
+
+    /**
+     * Constructor for ReachabilityExplorer class using every available core.
+     * @param petriNet Petri net to explore, its initial marking and structure are used.
+     * @param mode Mode of the exploration.
+     * @param maxStates Maximum number of states to explore, the exploration stops after reaching it.
+     */
+    public ReachabilityExplorer(PetriNet petriNet, Mode mode, long maxStates) {
+        this(petriNet, mode, Runtime.getRuntime().availableProcessors(), maxStates);
+    }
+
+    /**
+     * Fires the enabled transitions of the marking passed as argument, adding the new markings to the next level.
+     * @param marking Marking to expand.
+     * @param next Markings of the next level.
+     */
+    private void expand(int[] marking, List<int[]> next) {
+        for (int i = 0; i < marking.length; i++)
+            if (marking[i] > bounds.get(i))
+                bounds.accumulateAndGet(i, marking[i], Math::max);
+
+        if (stubbornSets != null) {
+            int[] transitions = stubbornSets.reduce(marking);
+
+            if (transitions.length == 0)
+                deadlocks.add(marking);
+
+            for (int t : transitions)
+                fire(marking, t, next);
+
+            return;
+        }
+
+        boolean deadlock = true;
+
+        for (int t = 1; t <= net.getNumberOfTransitions(); t++) {
+            if (net.isEnabled(marking, t)) {
+                deadlock = false;
+                fire(marking, t, next);
+            }
+        }
+
+        if (deadlock)
+            deadlocks.add(marking);
+    }
+
+    /**
+     * Fires the transition from the marking passed as argument, adding the new marking to the next level if it was not visited.
+     * A slot is reserved for the new marking before adding it, so the states never exceed the maximum.
+     * @param marking Marking to fire from.
+     * @param transition Enabled transition to fire.
+     * @param next Markings of the next level.
+     */
+    private void fire(int[] marking, int transition, List<int[]> next) {
+        int[] successor = new int[marking.length];
+
+        edges.increment();
+        net.fire(marking, transition, successor);
+
+        if (truncated.get() || !visited.add(new Marking(successor)))
+            return;
+
+        if (states.getAndIncrement() < maxStates)
+            next.add(successor);
+        else {
+            states.decrementAndGet();
+            truncated.set(true);
+        }
+    }
+
+    /**
+     * Explores the reachability graph of the Petri net.
+     * @return Report with the results of the exploration.
+     */
+    public ReachabilityReport explore() {
+        long start = System.nanoTime();
+
+        visited = ConcurrentHashMap.newKeySet();
+        states = new AtomicLong(1);
+        truncated = new AtomicBoolean(false);
+        edges = new LongAdder();
+        deadlocks = Collections.synchronizedList(new ArrayList<>());
+        bounds = new AtomicIntegerArray(initialMarking.length);
+
+        List<int[]> level = new ArrayList<>();
+        level.add(initialMarking);
+        visited.add(new Marking(initialMarking));
+
+        while (!level.isEmpty())
+            level = pool.invoke(new ExploreTask(level, 0, level.size()));
+
+        int[] placeBounds = new int[initialMarking.length];
+
+        for (int i = 0; i < placeBounds.length; i++)
+            placeBounds[i] = bounds.get(i);
+
+        return new ReachabilityReport(states.get(), edges.sum(), new ArrayList<>(deadlocks), placeBounds,
+                                      System.nanoTime() - start, !truncated.get(), stubbornSets != null && stubbornSets.isApplicable());
+    }
+
+    /**
+     * Shuts down the workers of the exploration.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
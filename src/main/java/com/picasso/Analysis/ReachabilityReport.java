@@ -0,0 +1,128 @@
+package com.picasso.Analysis;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ReachabilityReport class holds the results of the exploration of the reachability graph of a Petri net.
+ */
+public class ReachabilityReport {
+    // Number of distinct markings reached
+    private final long states;
+    // Number of firings explored
+    private final long edges;
+    // Markings without enabled transitions
+    private final List<int[]> deadlocks;
+    // Maximum number of tokens reached by each place
+    private final int[] bounds;
+    // Time spent exploring, in nanoseconds
+    private final long elapsedTime;
+    // True if every reachable marking was explored
+    private final boolean complete;
+    // True if the exploration was reduced with stubborn sets, only deadlocks are preserved
+    private final boolean reduced;
+
+    /**
+     * Constructor for ReachabilityReport class.
+     * @param states Number of distinct markings reached.
+     * @param edges Number of firings explored.
+     * @param deadlocks Markings without enabled transitions.
+     * @param bounds Maximum number of tokens reached by each place.
+     * @param elapsedTime Time spent exploring, in nanoseconds.
+     * @param complete True if every reachable marking was explored.
+     * @param reduced True if the exploration was reduced with stubborn sets.
+     */
+    public ReachabilityReport(long states, long edges, List<int[]> deadlocks, int[] bounds, long elapsedTime, boolean complete, boolean reduced) {
+        this.states = states;
+        this.edges = edges;
+        this.deadlocks = deadlocks;
+        this.bounds = bounds;
+        this.elapsedTime = elapsedTime;
+        this.complete = complete;
+        this.reduced = reduced;
+    }
+
+    /**
+     * Returns the number of distinct markings reached.
+     * @return Number of states.
+     */
+    public long getStates() {
+        return states;
+    }
+
+    /**
+     * Returns the number of firings explored.
+     * @return Number of edges of the reachability graph.
+     */
+    public long getEdges() {
+        return edges;
+    }
+
+    /**
+     * Returns the markings without enabled transitions.
+     * @return List of deadlock markings.
+     */
+    public List<int[]> getDeadlocks() {
+        return deadlocks;
+    }
+
+    /**
+     * Returns the maximum number of tokens reached by each place.
+     * @return Array with the bound of each place.
+     */
+    public int[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the time spent exploring.
+     * @return Elapsed time in milliseconds.
+     */
+    public double getElapsedMillis() {
+        return elapsedTime / 1e6;
+    }
+
+    /**
+     * Returns the exploration speed.
+     * @return Edges explored per second.
+     */
+    public double getEdgesPerSecond() {
+        return elapsedTime == 0 ? 0 : edges * 1e9 / elapsedTime;
+    }
+
+    /**
+     * Checks if every reachable marking was explored.
+     * @return True  if the exploration was not cut by the states limit
+     *         False otherwise
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Checks if the exploration was reduced with stubborn sets. In that case the states, edges and bounds belong to the
+     * reduced graph and only the deadlocks are the same as in the full graph.
+     * @return True  if the exploration was reduced
+     *         False otherwise
+     */
+    public boolean isReduced() {
+        return reduced;
+    }
+
+    /**
+     * Returns a string representation of the report.
+     * @return String with the states, edges, deadlocks, bounds and speed of the exploration.
+     */
+    @Override
+    public String toString() {
+        return "ReachabilityReport {" +
+                "states=" + states +
+                ", edges=" + edges +
+                ", deadlocks=" + deadlocks.size() +
+                ", bounds=" + Arrays.toString(bounds) +
+                ", complete=" + complete +
+                ", reduced=" + reduced +
+                ", time=" + String.format("%.2f", getElapsedMillis()) + "[ms]" +
+                ", edges/s=" + String.format("%.0f", getEdgesPerSecond()) + '}';
+    }
+}
@@ -0,0 +1,205 @@
+package com.picasso.Analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.picasso.PetriNet.BitMask;
+import com.picasso.PetriNet.CompiledPetriNet;
+
+/**
+ * StubbornSets class computes deadlock preserving stubborn sets of a Petri net from the pre and post sets of its transitions.
+ * For an enabled transition every transition sharing one of its input places is added, and for a disabled transition
+ * every transition producing in one of its unmarked input places (the scapegoat) is added. Firing only the enabled
+ * transitions of the set keeps every deadlock of the net reachable.
+ */
+class StubbornSets {
+    // Compiled Petri net to reduce
+    private final CompiledPetriNet net;
+    // Number of transitions of the net
+    private final int numberOfTransitions;
+    // Input places of each transition
+    private final int[][] preSets;
+    // Weights of the input places of each transition
+    private final int[][] preWeights;
+    // Transitions consuming from each place
+    private final int[][] consumers;
+    // Transitions producing in each place
+    private final int[][] producers;
+    // True if the reduction can be applied, bounded places are not supported
+    private final boolean applicable;
+
+    /**
+     * Constructor for StubbornSets class.
+     * @param net Compiled Petri net to reduce.
+     */
+    StubbornSets(CompiledPetriNet net) {
+        this.net = net;
+        this.numberOfTransitions = net.getNumberOfTransitions();
+        this.preSets = new int[numberOfTransitions][];
+        this.preWeights = new int[numberOfTransitions][];
+
+        List<List<Integer>> consumersList = new ArrayList<>();
+        List<List<Integer>> producersList = new ArrayList<>();
+
+        for (int p = 0; p < net.getNumberOfPlaces(); p++) {
+            consumersList.add(new ArrayList<>());
+            producersList.add(new ArrayList<>());
+        }
+
+        for (int t = 1; t <= numberOfTransitions; t++) {
+            preSets[t - 1] = net.getPreSet(t);
+            preWeights[t - 1] = net.getPreWeights(t);
+
+            for (int p : preSets[t - 1])
+                consumersList.get(p).add(t);
+
+            for (int p : net.getPostSet(t))
+                producersList.get(p).add(t);
+        }
+
+        this.consumers = toArrays(consumersList);
+        this.producers = toArrays(producersList);
+
+        boolean bounded = false;
+
+        for (int p = 0; p < net.getNumberOfPlaces(); p++)
+            bounded |= net.isBounded(p);
+
+        this.applicable = !bounded;
+    }
+
+    /**
+     * Checks if the reduction can be applied to the Petri net. Otherwise every enabled transition is fired from each marking.
+     * @return True  if the Petri net has no bounded places
+     *         False otherwise
+     */
+    boolean isApplicable() {
+        return applicable;
+    }
+
+    /**
+     * Converts a list of lists of transitions to an array of arrays.
+     * @param lists Lists to convert.
+     * @return Array of arrays with the same elements.
+     */
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        return lists.stream()
+                    .map(l -> l.stream().mapToInt(Integer::intValue).toArray())
+                    .toArray(int[][]::new);
+    }
+
+    /**
+     * Returns the enabled transitions of a stubborn set of the marking passed as argument.
+     * Every enabled transition is tried as seed and the set with less enabled transitions is kept.
+     * @param marking Marking to reduce.
+     * @return Array of transitions to fire from the marking, starting at 1. It is empty only if the marking is a deadlock.
+     */
+    int[] reduce(int[] marking) {
+        long[] enabled = BitMask.create(numberOfTransitions);
+
+        for (int t = 1; t <= numberOfTransitions; t++)
+            if (net.isEnabled(marking, t))
+                BitMask.set(enabled, t - 1);
+
+        if (!applicable || BitMask.count(enabled) <= 1)
+            return BitMask.toTransitions(enabled);
+
+        long[] best = null;
+        int bestCount = Integer.MAX_VALUE;
+        long[] stubborn = BitMask.create(numberOfTransitions);
+        int[] stack = new int[numberOfTransitions];
+
+        for (int seed : BitMask.toTransitions(enabled)) {
+            int count = closure(marking, enabled, seed, stubborn, stack, bestCount);
+
+            if (count < bestCount) {
+                bestCount = count;
+                best = stubborn.clone();
+            }
+
+            if (bestCount == 1)
+                break;
+        }
+
+        BitMask.and(best, enabled, best);
+
+        return BitMask.toTransitions(best);
+    }
+
+    /**
+     * Computes the stubborn set of the seed passed as argument.
+     * @param marking Marking to reduce.
+     * @param enabled Enabled transitions of the marking.
+     * @param seed Enabled transition starting the set.
+     * @param stubborn Mask where the set is stored.
+     * @param stack Scratch stack of transitions to process.
+     * @param limit Number of enabled transitions after which the set is discarded.
+     * @return Number of enabled transitions of the set, or the limit if it was reached.
+     */
+    private int closure(int[] marking, long[] enabled, int seed, long[] stubborn, int[] stack, int limit) {
+        for (int i = 0; i < stubborn.length; i++)
+            stubborn[i] = 0;
+
+        int top = 0;
+        int count = 0;
+
+        BitMask.set(stubborn, seed - 1);
+        stack[top++] = seed;
+
+        while (top > 0) {
+            int t = stack[--top];
+
+            if (BitMask.get(enabled, t - 1)) {
+                if (++count >= limit)
+                    return limit;
+
+                for (int p : preSets[t - 1])
+                    for (int u : consumers[p])
+                        top = push(stubborn, stack, top, u);
+
+                continue;
+            }
+
+            for (int u : producers[scapegoat(marking, t)])
+                top = push(stubborn, stack, top, u);
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds the transition to the set and to the stack if it was not in the set.
+     * @param stubborn Set of transitions.
+     * @param stack Stack of transitions to process.
+     * @param top Top of the stack.
+     * @param transition Transition to add, starting at 1.
+     * @return New top of the stack.
+     */
+    private static int push(long[] stubborn, int[] stack, int top, int transition) {
+        if (BitMask.get(stubborn, transition - 1))
+            return top;
+
+        BitMask.set(stubborn, transition - 1);
+        stack[top] = transition;
+
+        return top + 1;
+    }
+
+    /**
+     * Returns the input place of the disabled transition with not enough tokens and less producers.
+     * @param marking Marking where the transition is disabled.
+     * @param transition Disabled transition, starting at 1.
+     * @return Index of the scapegoat place, starting at 0.
+     */
+    private int scapegoat(int[] marking, int transition) {
+        int[] places = preSets[transition - 1];
+        int[] weights = preWeights[transition - 1];
+        int best = -1;
+
+        for (int k = 0; k < places.length; k++)
+            if (marking[places[k]] < weights[k] && (best < 0 || producers[places[k]].length < producers[best].length))
+                best = places[k];
+
+        return best;
+    }
+}
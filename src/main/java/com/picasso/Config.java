@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.picasso.Analysis.ReachabilityExplorer;
 import com.picasso.Artist.Artist;
 import com.picasso.Artist.BWPainter;
 import com.picasso.Artist.Compressor;
@@ -13,6 +14,7 @@ import com.picasso.Artist.PainterPattern;
 import com.picasso.Artist.RGBPainter;
 import com.picasso.Artist.SuperPositioner;
 import com.picasso.Artist.TemplatePattern;
+import com.picasso.PetriNet.MarkingStore;
 
 /**
  * Config class is used to store the configuration of the program.
@@ -58,6 +60,21 @@ public abstract class Config {
         new int[]{9, 10, 11, 12}
     );
 
+    // Weight of each invariant, the ratio of cycles between them with PolicyDeficitRoundRobin.
+    public static final List<Integer> INVARIANTS_WEIGHTS = List.of(1, 1, 1);
+    // Probability of firing a random transition with PolicyBandit.
+    public static final double BANDIT_EXPLORATION = 0.1;
+    // Weight of a new reward in the estimates of PolicyBandit.
+    public static final double BANDIT_STEP_SIZE = 0.1;
+    // Cycles per second of an invariant that earn the full reward of a decision with PolicyBandit.
+    public static final double BANDIT_REWARD_RATE = 20;
+    // Transitions simulated ahead by PolicyLookahead, the candidate included.
+    public static final int LOOKAHEAD_DEPTH = 4;
+    // Maximum time, in microseconds, PolicyLookahead simulates in each decision.
+    public static final long LOOKAHEAD_BUDGET = 20;
+    // Resource places of the Petri net, P12 to P14 and CS1 to CS3, starting at 1.
+    public static final int[] RESOURCE_PLACES = {12, 13, 14, 16, 17, 18};
+
     // Transitions and artists of each segment.
     public static final List<Map<Integer, Artist>> SEGMENT_TRANSITIONS = List.of(
         new HashMap<Integer, Artist>() { 
@@ -94,6 +111,48 @@ public abstract class Config {
 
     // Number of threads of each segment.
     public static final List<Integer> SEGMENT_THREADS = List.of(2, 4, 4, 1, 4);
+    // Maximum time, in milliseconds, a segment thread waits for a transition before skipping to the next one.
+    public static final long SEGMENT_WAIT_TIME = 30;
+    // True to run the segments on a shared pool of workers that steal work across segments, instead of threads bound to each segment.
+    public static final boolean SEGMENT_EXECUTOR = false;
+    // Number of workers of the shared pool. If it is not positive, the available processors, with at least one worker per segment.
+    public static final int SEGMENT_WORKERS = 0;
+    // True to grow and shrink the threads of each segment at runtime, starting from SEGMENT_THREADS.
+    public static final boolean SEGMENT_AUTOSCALING = false;
+    // Minimum number of threads of each segment when autoscaling.
+    public static final int SEGMENT_MIN_THREADS = 1;
+    // Maximum number of threads of each segment when autoscaling.
+    public static final int SEGMENT_MAX_THREADS = 8;
+    // Time, in milliseconds, between two autoscaling decisions.
+    public static final long SEGMENT_SCALING_PERIOD = 500;
+    // True to run the segments on virtual threads, if the JVM supports them, instead of platform threads.
+    public static final boolean VIRTUAL_THREADS = false;
+
+    // Number of threads running the artists, which fire their transitions in two phases, 0 to run each artist on the
+    // thread that fires its transition. It is not used by the lock-free engine.
+    // The pool is shared by every segment, so the jobs of segment E queue behind the ones of the pipelines, and a firing
+    // started keeps its pre-set consumed until its job is done, so the pipelines hold P14, CS1 and CS2 while T4 to T7
+    // work and T9 is rarely enabled: segment E completes far fewer cycles than with 0, more so with fewer threads.
+    public static final int ARTIST_THREADS = 0;
+
+    // True to fire the transitions with the lock-free engine, which does not record the states of the Petri net.
+    // It ignores the policy of Main, each firing wakes the waiters of its dependents, and it does not support bounded places.
+    public static final boolean LOCK_FREE_MONITOR = false;
+
+    // How the markings reached by the Petri net are recorded.
+    public static final MarkingStore.Mode MARKING_STORE_MODE = MarkingStore.Mode.COUNT;
+    // True to keep the recorded markings off heap.
+    public static final boolean MARKING_STORE_OFF_HEAP = false;
+
+    // Number of firings between two checks of the P-invariants of the marking, 0 disables the checks.
+    public static final int P_INVARIANTS_CHECK_RATE = 100;
+
+    // True to explore the reachability graph of the Petri net before running the threads.
+    public static final boolean EXPLORE_REACHABILITY = false;
+    // Mode of the exploration of the reachability graph, PARTIAL_ORDER only preserves deadlocks.
+    public static final ReachabilityExplorer.Mode REACHABILITY_MODE = ReachabilityExplorer.Mode.FULL;
+    // Maximum number of states explored in the reachability graph.
+    public static final long MAX_REACHABILITY_STATES = 10_000_000;
 
     // Time of execution until interrupting threads.
     public static final int TIME_EXECUTION = 10000;
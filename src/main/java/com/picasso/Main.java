@@ -2,13 +2,27 @@ package com.picasso;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import com.picasso.Analysis.InvariantAnalyzer;
+import com.picasso.Analysis.ReachabilityExplorer;
+import com.picasso.Analysis.ReachabilityReport;
+import com.picasso.Artist.Artist;
+import com.picasso.Monitor.LockFreeMonitor;
 import com.picasso.Monitor.Monitor;
+import com.picasso.Monitor.MonitorInterface;
 import com.picasso.PetriNet.PetriNet;
 import com.picasso.Policy.*;
 import com.picasso.Segment.Segment;
+import com.picasso.Segment.SegmentExecutor;
+import com.picasso.Segment.SegmentScaler;
+import com.picasso.Segment.SegmentThreads;
 import com.picasso.Data.Logger;
 
 /**
@@ -18,8 +32,9 @@ public class Main {
     /**
      * Logs the statistics of the program.
      * @param monitor Monitor of the Petri net.
+     * @param petriNet Petri net of the program.
      */
-    private static void logStatistics(Monitor monitor) {
+    private static void logStatistics(MonitorInterface monitor, PetriNet petriNet) {
         Logger.logStatistics("* ------------------------------ STATISTICS ------------------------------ *\n");
 
         Logger.logStatistics(String.format("- TIME EXECUTION -> %dms", System.currentTimeMillis() - Config.START_TIME));
@@ -28,15 +43,71 @@ public class Main {
         monitor.getTransitionsFiredCount().forEach((k, v) -> Logger.logStatistics(String.format("\tT%-2d -> %d", k, v)));
         Logger.logStatistics("\n- INVARIANTS FIRED");
         monitor.getInvariantsTransitionsFiredCount().forEach((k, v) -> Logger.logStatistics(String.format("\tINV %s -> %d", Arrays.toString(k), v)));
+        Logger.logStatistics("\n- STATES");
+        Logger.logStatistics(String.format("\tDISTINCT -> %d", petriNet.getStatesCount()));
+        Logger.logStatistics(String.format("\tP-INVARIANT VIOLATIONS -> %d", petriNet.getInvariantViolations()));
 
         Logger.logStatistics("\n* ------------------------------ STATISTICS ------------------------------ *");
     }
 
     /**
-     * Executes the threads of the program for a certain time. Waits until all threads are finished and return.
+     * Explores the reachability graph of the Petri net and logs the results.
+     * @param petriNet Petri net to explore.
+     */
+    private static void logReachability(PetriNet petriNet) {
+        ReachabilityExplorer explorer = new ReachabilityExplorer(petriNet, Config.REACHABILITY_MODE, Config.MAX_REACHABILITY_STATES);
+        ReachabilityReport report = explorer.explore();
+
+        explorer.shutdown();
+
+        Logger.logSystem(String.format("REACHABILITY -> %d states, %d edges, %d deadlocks, %s%s in %.2fms (%.0f edges/s)",
+                                       report.getStates(), report.getEdges(), report.getDeadlocks().size(),
+                                       report.isComplete() ? "complete" : "incomplete", report.isReduced() ? " reduced" : "",
+                                       report.getElapsedMillis(), report.getEdgesPerSecond()));
+        Logger.logSystem(String.format("REACHABILITY -> bounds %s", Arrays.toString(report.getBounds())));
+
+        if (Config.REACHABILITY_MODE == ReachabilityExplorer.Mode.PARTIAL_ORDER && !report.isReduced())
+            Logger.logSystem("WARNING -> The partial order reduction does not support bounded places, the full graph was explored");
+
+        report.getDeadlocks().forEach(m -> Logger.logSystem(String.format("REACHABILITY -> deadlock %s", Arrays.toString(m))));
+
+        Logger.logSystem("");
+    }
+
+    /**
+     * Logs the minimal support invariants of the Petri net, warning if the T-invariants differ from the configured ones.
+     * The P-invariants are checked at runtime with the configured rate.
+     * @param monitor Monitor of the Petri net.
+     * @param petriNet Petri net to analyze.
+     */
+    private static void logInvariants(MonitorInterface monitor, PetriNet petriNet) {
+        InvariantAnalyzer analyzer = new InvariantAnalyzer(petriNet.getIncidenceMatrix());
+
+        monitor.getInvariantsTransitionsFiredCount().keySet().forEach(i -> Logger.logSystem(String.format("T-INVARIANT -> %s", Arrays.toString(i))));
+        List<int[]> pInvariants = analyzer.computePInvariants();
+
+        pInvariants.forEach(i -> Logger.logSystem(String.format("P-INVARIANT -> %s", Arrays.toString(InvariantAnalyzer.toSupport(i)))));
+
+        petriNet.setInvariantChecking(pInvariants, Config.P_INVARIANTS_CHECK_RATE);
+
+        boolean configured = monitor.getInvariantsTransitionsFiredCount().size() == Config.INVARIANTS_TRANSITIONS.size()
+                             && Config.INVARIANTS_TRANSITIONS.stream()
+                                                             .allMatch(c -> monitor.getInvariantsTransitionsFiredCount().keySet()
+                                                                                   .stream()
+                                                                                   .anyMatch(i -> Arrays.equals(i, c)));
+
+        if (!configured)
+            Logger.logSystem("WARNING -> T-invariants computed from the incidence matrix differ from Config.INVARIANTS_TRANSITIONS");
+
+        Logger.logSystem("");
+    }
+
+    /**
+     * Executes the threads of the program for a certain time. Interrupts the monitor, waits until all threads are finished and return.
+     * @param monitor Monitor of the Petri net.
      * @param threads List of threads to execute.
      */
-    private static void execute(List<Thread> threads) {
+    private static void execute(MonitorInterface monitor, List<Thread> threads) {
         for (Thread thread : threads) {
             thread.start();
             Logger.logSystem(String.format("STARTED -> %-35s", thread.getName()));
@@ -50,6 +121,8 @@ public class Main {
             e.printStackTrace();
         }
 
+        monitor.interrupt();
+
         for (Thread thread : threads)
             thread.interrupt();
 
@@ -62,23 +135,68 @@ public class Main {
         }
     }
 
+    /**
+     * Hands the artists of the segments to the monitor, which fires their transitions in two phases and makes them work
+     * on the executor passed as argument.
+     * @param monitor Monitor of the Petri net.
+     * @param artists Executor running the artists.
+     */
+    private static void setArtistJobs(Monitor monitor, Executor artists) {
+        monitor.setJobExecutor(artists);
+
+        Config.SEGMENT_TRANSITIONS.forEach(segment -> segment.forEach((t, artist) -> {
+            if (artist != null)
+                monitor.setJob(t, artist::work);
+        }));
+    }
+
+    /**
+     * Returns the transitions and artists of a segment, without the artists if they work on the monitor executor.
+     * @param segment Index of the segment.
+     * @param twoPhase True if the artists work on the monitor executor.
+     * @return Map of transitions and artists of the segment.
+     */
+    private static Map<Integer, Artist> segmentTransitions(int segment, boolean twoPhase) {
+        Map<Integer, Artist> transitions = new HashMap<>(Config.SEGMENT_TRANSITIONS.get(segment));
+
+        if (twoPhase)
+            transitions.replaceAll((t, artist) -> null);
+
+        return transitions;
+    }
+
+    /**
+     * Waits until the artists working on the monitor executor complete their firings.
+     * @param monitor Monitor of the Petri net.
+     */
+    private static void awaitArtists(Monitor monitor) {
+        try {
+            monitor.awaitJobs();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Fires the final transitions of the Petri to return to the initial state.
      * @param monitor Monitor of the Petri net.
+     * @param twoPhase True if the artists work on the monitor executor, their firings are completed before each round.
      */
-    private static void finished(Monitor monitor) {
+    private static void finished(MonitorInterface monitor, boolean twoPhase) {
         while (true) {
             boolean end = true;
 
+            if (twoPhase)
+                awaitArtists((Monitor) monitor);
+
             for(int t : Config.FINAL_TRANSITIONS) {
                 if (monitor.fireTransition(t, true)) {
-                    Logger.logTransition(String.format("FIRED -> T%-2d ON [%s]", t, Thread.currentThread().getName()));
-
-                    Config.SEGMENT_TRANSITIONS.forEach(segment -> {
-                        if (segment.containsKey(t))
-                            if (segment.get(t) != null)
-                                segment.get(t).work();
-                    });
+                    if (!twoPhase)
+                        Config.SEGMENT_TRANSITIONS.forEach(segment -> {
+                            if (segment.containsKey(t))
+                                if (segment.get(t) != null)
+                                    segment.get(t).work();
+                        });
 
                     end = false;
                 }
@@ -97,21 +215,48 @@ public class Main {
         Logger.logSystem("* ------------------------------- PICASSO ------------------------------- *\n");
 
         PetriNet petriNet = new PetriNet("PetriNet", Config.INITIAL_MARKING, Config.INCIDENCE_MATRIX, Config.NUMBER_OF_PLACES, Config.NUMBER_OF_TRANSITIONS);
+        if (Config.EXPLORE_REACHABILITY)
+            logReachability(petriNet);
+
         Policy policy = new PolicyRandom();
-        Monitor monitor = new Monitor(petriNet, policy, Config.INVARIANTS_TRANSITIONS);
+        MonitorInterface monitor = Config.LOCK_FREE_MONITOR ? new LockFreeMonitor(petriNet) : new Monitor(petriNet, policy);
         List<Thread> threads = new ArrayList<Thread>();
+        boolean twoPhase = Config.ARTIST_THREADS > 0 && !Config.LOCK_FREE_MONITOR;
+        ExecutorService artists = twoPhase ? Executors.newFixedThreadPool(Config.ARTIST_THREADS) : null;
+
+        if (twoPhase)
+            setArtistJobs((Monitor) monitor, artists);
 
         Segment[] segments = {
-            new Segment("A", monitor, Config.SEGMENT_TRANSITIONS.get(0)),
-            new Segment("B", monitor, Config.SEGMENT_TRANSITIONS.get(1)),
-            new Segment("C", monitor, Config.SEGMENT_TRANSITIONS.get(2)),
-            new Segment("D", monitor, Config.SEGMENT_TRANSITIONS.get(3)),
-            new Segment("E", monitor, Config.SEGMENT_TRANSITIONS.get(4))
+            new Segment("A", monitor, segmentTransitions(0, twoPhase)),
+            new Segment("B", monitor, segmentTransitions(1, twoPhase)),
+            new Segment("C", monitor, segmentTransitions(2, twoPhase)),
+            new Segment("D", monitor, segmentTransitions(3, twoPhase)),
+            new Segment("E", monitor, segmentTransitions(4, twoPhase))
         };
 
-        for (int i = 0; i < Config.SEGMENT_TRANSITIONS.size(); i++)
-            for (int j = 0; j < Config.SEGMENT_THREADS.get(i); j++)
-                threads.add(new Thread(segments[i], "[Segment " + segments[i].getName() + " - Thread " + j + "]"));
+        if (Config.SEGMENT_EXECUTOR) {
+            SegmentExecutor executor = new SegmentExecutor(monitor, segments, Config.SEGMENT_THREADS, Config.SEGMENT_WORKERS,
+                                                           Config.SEGMENT_WAIT_TIME, Config.VIRTUAL_THREADS);
+
+            threads.addAll(executor.getWorkers());
+        }
+        else if (Config.SEGMENT_AUTOSCALING) {
+            SegmentScaler scaler = new SegmentScaler(monitor, segments, Config.SEGMENT_THREADS, Config.SEGMENT_MIN_THREADS,
+                                                     Config.SEGMENT_MAX_THREADS, Config.SEGMENT_SCALING_PERIOD, Config.VIRTUAL_THREADS);
+
+            threads.add(new Thread(scaler, "[Segment Scaler]"));
+        }
+        else {
+            for (int i = 0; i < Config.SEGMENT_TRANSITIONS.size(); i++)
+                for (int j = 0; j < Config.SEGMENT_THREADS.get(i); j++)
+                    threads.add(SegmentThreads.newThread(segments[i], "[Segment " + segments[i].getName() + " - Thread " + j + "]", Config.VIRTUAL_THREADS));
+        }
+
+        if (Config.VIRTUAL_THREADS && !SegmentThreads.isVirtualSupported())
+            Logger.logSystem("WARNING -> Virtual threads are not supported by this JVM, the segments run on platform threads\n");
+
+        petriNet.setStatesMode(Config.MARKING_STORE_MODE, Config.MARKING_STORE_OFF_HEAP);
 
         petriNet.setPlaceName("P16", "CS1");
         petriNet.setPlaceName("P17", "CS2");
@@ -126,11 +271,16 @@ public class Main {
         petriNet.setTransitionTime("T11", Config.TIMED_TRANSITIONS.get(6)[0], Config.TIMED_TRANSITIONS.get(6)[1]);
         petriNet.setTransitionTime("T12", Config.TIMED_TRANSITIONS.get(7)[0], Config.TIMED_TRANSITIONS.get(7)[1]);
 
-        execute(threads);
+        logInvariants(monitor, petriNet);
+
+        execute(monitor, threads);
+
+        finished(monitor, twoPhase);
 
-        finished(monitor);
+        if (twoPhase)
+            artists.shutdown();
 
-        logStatistics(monitor);
+        logStatistics(monitor, petriNet);
 
         Logger.logSystem("\n* ------------------------------- PICASSO ------------------------------- *");
 
@@ -0,0 +1,125 @@
+package com.picasso.Monitor;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeadlineScheduler class keeps the instants when the time frames of the timed transitions open and close in a DelayQueue.
+ * A single thread takes each deadline when its instant is reached and hands it to the handler, so any number of
+ * transitions can be waiting for their time frames without a thread sleeping for each one.
+ * Deadlines carry the time stamp they were computed from, so the handler can discard the ones of a sensibilization
+ * that is no longer current.
+ */
+final class DeadlineScheduler {
+    /**
+     * Handler interface receives the deadlines reached.
+     */
+    interface Handler {
+        /**
+         * Handles a deadline reached.
+         * @param transition Transition of the deadline, starting at 1.
+         * @param timeStamp Time stamp of the transition when the deadline was scheduled.
+         * @param opening True if the time frame opens, false if it closes.
+         */
+        void onDeadline(int transition, long timeStamp, boolean opening);
+    }
+
+    /**
+     * Deadline class is an instant of the time frame of a transition.
+     */
+    private static final class Deadline implements Delayed {
+        // Transition of the deadline, starting at 1
+        private final int transition;
+        // Time stamp of the transition when the deadline was scheduled
+        private final long timeStamp;
+        // Instant of the deadline, from System.nanoTime()
+        private final long instant;
+        // True if the time frame opens, false if it closes
+        private final boolean opening;
+
+        /**
+         * Constructor for Deadline class.
+         * @param transition Transition of the deadline, starting at 1.
+         * @param timeStamp Time stamp of the transition.
+         * @param instant Instant of the deadline, from System.nanoTime().
+         * @param opening True if the time frame opens, false if it closes.
+         */
+        private Deadline(int transition, long timeStamp, long instant, boolean opening) {
+            this.transition = transition;
+            this.timeStamp = timeStamp;
+            this.instant = instant;
+            this.opening = opening;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(instant - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.signum(instant - ((Deadline) other).instant);
+        }
+    }
+
+    // Deadlines not reached yet
+    private final DelayQueue<Deadline> deadlines;
+    // Handler of the deadlines reached
+    private final Handler handler;
+    // Thread taking the deadlines
+    private final Thread thread;
+
+    /**
+     * Constructor for DeadlineScheduler class. The thread is not started.
+     * @param name Name of the thread.
+     * @param handler Handler of the deadlines reached.
+     */
+    DeadlineScheduler(String name, Handler handler) {
+        this.deadlines = new DelayQueue<>();
+        this.handler = handler;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Takes the deadlines as they are reached until the thread is interrupted.
+     */
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Deadline deadline = deadlines.take();
+
+                handler.onDeadline(deadline.transition, deadline.timeStamp, deadline.opening);
+            }
+        } catch (InterruptedException e) {
+            deadlines.clear();
+        }
+    }
+
+    /**
+     * Schedules the opening and the closing of the time frame of a transition.
+     * @param transition Transition, starting at 1.
+     * @param timeStamp Time stamp of the transition.
+     * @param opening Instant when the time frame opens, from System.nanoTime().
+     * @param closing Instant when the time frame closes, from System.nanoTime().
+     */
+    void schedule(int transition, long timeStamp, long opening, long closing) {
+        deadlines.add(new Deadline(transition, timeStamp, opening, true));
+        deadlines.add(new Deadline(transition, timeStamp, closing, false));
+    }
+
+    /**
+     * Starts the thread taking the deadlines.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the thread taking the deadlines, discarding the ones not reached.
+     */
+    void stop() {
+        thread.interrupt();
+    }
+}
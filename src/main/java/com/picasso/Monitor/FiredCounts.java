@@ -0,0 +1,208 @@
+package com.picasso.Monitor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.picasso.PetriNet.BitMask;
+
+/**
+ * FiredCounts class counts the firings of each transition and the completed cycles of each invariant.
+ * The invariants of each transition are computed once, so a firing only updates the invariants containing it.
+ * The count of each transition is atomic and the cycle of each invariant is guarded by its own lock, so firings
+ * from different threads can be counted without a common mutex. The locks are ReentrantLocks, which do not pin the
+ * carrier of a virtual thread waiting for them. The counts can also be read one by one without any lock or copy.
+ */
+final class FiredCounts {
+    /**
+     * InvariantListener interface receives the cycles of the invariants completed.
+     */
+    interface InvariantListener {
+        /**
+         * Notifies that a cycle of an invariant was completed. It is called without holding any lock of the counts.
+         * @param invariant Invariant, starting at 0.
+         * @param count Completed cycles of the invariant, this one included.
+         */
+        void onInvariantCompleted(int invariant, long count);
+    }
+
+    // Transitions of each invariant, starting at 1
+    private final List<int[]> invariants;
+    // Invariants containing each transition, indexed by transition starting at 0
+    private final int[][] invariantsOfTransition;
+    // Position of each transition in each of its invariants, parallel to invariantsOfTransition
+    private final int[][] positionsInInvariant;
+    // Number of firings of each transition
+    private final AtomicLongArray transitionsFiredCount;
+    // Firings of each transition of each invariant not used by a completed cycle yet
+    private final long[][] transitionsFiredInInvariantCicle;
+    // Number of transitions of each invariant without firings in the current cycle
+    private final int[] missingTransitions;
+    // Number of completed cycles of each invariant
+    private final AtomicLongArray invariantsFiredCount;
+    // Transitions of each invariant, one bit per transition
+    private final long[][] invariantMasks;
+    // Lock of the cycle of each invariant
+    private final ReentrantLock[] cicleLocks;
+    // Listener of the cycles completed
+    private final InvariantListener listener;
+
+    /**
+     * Constructor for FiredCounts class.
+     * @param numberOfTransitions Number of transitions of the Petri net.
+     * @param invariants Transitions of each invariant, starting at 1.
+     * @param listener Listener of the cycles completed.
+     */
+    FiredCounts(int numberOfTransitions, List<int[]> invariants, InvariantListener listener) {
+        this.invariants = invariants;
+        this.listener = listener;
+        this.transitionsFiredCount = new AtomicLongArray(numberOfTransitions);
+        this.transitionsFiredInInvariantCicle = new long[invariants.size()][];
+        this.missingTransitions = new int[invariants.size()];
+        this.invariantsFiredCount = new AtomicLongArray(invariants.size());
+        this.invariantMasks = new long[invariants.size()][];
+        this.cicleLocks = new ReentrantLock[invariants.size()];
+
+        int[] count = new int[numberOfTransitions];
+
+        for (int i = 0; i < invariants.size(); i++) {
+            transitionsFiredInInvariantCicle[i] = new long[invariants.get(i).length];
+            missingTransitions[i] = invariants.get(i).length;
+            cicleLocks[i] = new ReentrantLock();
+            invariantMasks[i] = BitMask.create(numberOfTransitions);
+
+            for (int t : invariants.get(i)) {
+                count[t - 1]++;
+                BitMask.set(invariantMasks[i], t - 1);
+            }
+        }
+
+        this.invariantsOfTransition = new int[numberOfTransitions][];
+        this.positionsInInvariant = new int[numberOfTransitions][];
+
+        for (int t = 0; t < numberOfTransitions; t++) {
+            invariantsOfTransition[t] = new int[count[t]];
+            positionsInInvariant[t] = new int[count[t]];
+            count[t] = 0;
+        }
+
+        for (int i = 0; i < invariants.size(); i++) {
+            int[] invariant = invariants.get(i);
+
+            for (int k = 0; k < invariant.length; k++) {
+                int t = invariant[k] - 1;
+
+                invariantsOfTransition[t][count[t]] = i;
+                positionsInInvariant[t][count[t]++] = k;
+            }
+        }
+    }
+
+    /**
+     * Counts the firing of the transition passed as argument, completing the cycles of its invariants whose transitions
+     * were all fired and notifying the listener of each cycle completed.
+     * @param transition Transition fired, starting at 1.
+     */
+    void fired(int transition) {
+        int t = transition - 1;
+
+        transitionsFiredCount.incrementAndGet(t);
+
+        for (int k = 0; k < invariantsOfTransition[t].length; k++) {
+            int i = invariantsOfTransition[t][k];
+            long[] cicle = transitionsFiredInInvariantCicle[i];
+
+            long completed = 0;
+
+            cicleLocks[i].lock();
+
+            try {
+                if (cicle[positionsInInvariant[t][k]]++ == 0 && --missingTransitions[i] == 0) {
+                    completed = invariantsFiredCount.incrementAndGet(i);
+
+                    for (int j = 0; j < cicle.length; j++)
+                        if (--cicle[j] == 0)
+                            missingTransitions[i]++;
+                }
+            } finally {
+                cicleLocks[i].unlock();
+            }
+
+            if (completed > 0)
+                listener.onInvariantCompleted(i, completed);
+        }
+    }
+
+    /**
+     * Returns the number of firings of each transition.
+     * @return Unmodifiable snapshot of the fired count of each transition, starting at 1.
+     */
+    Map<Integer, Integer> getTransitionsFiredCount() {
+        Map<Integer, Integer> snapshot = new LinkedHashMap<>();
+
+        for (int t = 0; t < transitionsFiredCount.length(); t++)
+            snapshot.put(t + 1, (int) transitionsFiredCount.get(t));
+
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Returns the number of completed cycles of each invariant.
+     * @return Unmodifiable snapshot of the completed cycles of each invariant, in the order of the invariants.
+     */
+    Map<int[], Integer> getInvariantsFiredCount() {
+        Map<int[], Integer> snapshot = new LinkedHashMap<>();
+
+        for (int i = 0; i < invariants.size(); i++) {
+            cicleLocks[i].lock();
+
+            try {
+                snapshot.put(invariants.get(i), (int) invariantsFiredCount.get(i));
+            } finally {
+                cicleLocks[i].unlock();
+            }
+        }
+
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Getter for the number of firings of the transition passed as argument.
+     * @param transition Transition, starting at 1.
+     * @return Number of firings.
+     */
+    long getFiredCount(int transition) {
+        return transitionsFiredCount.get(transition - 1);
+    }
+
+    /**
+     * Getter for the number of invariants counted.
+     * @return Number of invariants.
+     */
+    int getNumberOfInvariants() {
+        return invariants.size();
+    }
+
+    /**
+     * Getter for the number of completed cycles of the invariant passed as argument.
+     * @param invariant Invariant, starting at 0.
+     * @return Number of completed cycles.
+     */
+    long getInvariantFiredCount(int invariant) {
+        return invariantsFiredCount.get(invariant);
+    }
+
+    /**
+     * Checks if the transition passed as argument belongs to the invariant passed as argument.
+     * @param invariant Invariant, starting at 0.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition belongs to the invariant
+     *         False otherwise
+     */
+    boolean isInInvariant(int invariant, int transition) {
+        return BitMask.get(invariantMasks[invariant], transition - 1);
+    }
+}
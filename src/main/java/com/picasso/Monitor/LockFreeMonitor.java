@@ -0,0 +1,540 @@
+package com.picasso.Monitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.picasso.Analysis.InvariantAnalyzer;
+import com.picasso.Data.Logger;
+import com.picasso.PetriNet.CompiledPetriNet;
+import com.picasso.PetriNet.PetriNet;
+
+/**
+ * LockFreeMonitor class synchronizes the threads that fire transitions without mutexes.
+ * The marking is packed in an AtomicLongArray, FIELD_BITS bits per place, with the places of the same conflict cluster
+ * in neighbouring fields. A transition takes the tokens of its pre-set with one compare and set per word, in ascending
+ * order, giving back the words already taken if one of them has not enough tokens, and then adds the tokens of its
+ * post-set. A thread parks in the waiters of its transition only while the transition is disabled, and it is unparked
+ * by the firings that can enable it.
+ * A timed transition is sensibilized when it is first enabled after its own last firing, and each thread waiting for its
+ * time frame parks until the frame opens. Firings of unrelated transitions do not restart its time frame, and neither do
+ * competitors that take its tokens for a while, which fire without waiting; it is only sensibilized again when it fires
+ * or misses its time frame.
+ * Bounded places are not supported, and no policy is used: each firing wakes the first waiter of every dependent transition.
+ * The places and the states of the Petri net are not updated, it only provides the structure and the time frames.
+ */
+public class LockFreeMonitor implements MonitorInterface {
+    // Time stamp of a timed transition that is not sensibilized
+    private static final long NOT_SENSITIZED = Long.MIN_VALUE;
+    // Bits of the field of each place
+    private static final int FIELD_BITS = 16;
+    // Number of fields of each word
+    private static final int FIELDS_PER_WORD = Long.SIZE / FIELD_BITS;
+    // Highest bit of a field, always clear so a subtraction that borrows from it can be detected
+    private static final long GUARD = 1L << (FIELD_BITS - 1);
+    // Maximum number of tokens of a place
+    private static final int MAX_TOKENS = (int) GUARD - 1;
+
+    // Flat representation of the Petri net
+    private final CompiledPetriNet net;
+    // Names of the transitions, used in the logs
+    private final String[] names;
+    // Tokens of every place, packed in fields
+    private final AtomicLongArray marking;
+    // Word and shift of the field of each place
+    private final int[] wordOfPlace;
+    private final int[] shiftOfPlace;
+    // Pre-set of each transition by word: consumeTokens[t][k] is taken from word consumeWords[t][k], whose fields consumeGuards[t][k] are checked
+    private final int[][] consumeWords;
+    private final long[][] consumeTokens;
+    private final long[][] consumeGuards;
+    // Post-set of each transition by word: produceTokens[t][k] is added to word produceWords[t][k], whose fields produceGuards[t][k] must not overflow
+    private final int[][] produceWords;
+    private final long[][] produceTokens;
+    private final long[][] produceGuards;
+    // Transitions whose enabling can change when each transition fires, starting at 1
+    private final int[][] dependents;
+    // Threads parked waiting for each transition to be enabled
+    private final List<ConcurrentLinkedQueue<Thread>> waiters;
+    // Last time each transition was sensibilized, from System.nanoTime(), NOT_SENSITIZED while it is disabled
+    private final AtomicLongArray timeStamps;
+    // Counts of fired transitions and invariants
+    private final FiredCounts firedCounts;
+    // Flag to indicate if the monitor was interrupted
+    private volatile boolean interrupted;
+
+    /**
+     * Constructor for LockFreeMonitor class. The marking starts as the current marking of the Petri net.
+     * @param petriNet Petri net to be synchronized.
+     * @param invariantsTransitions List of invariants and their transitions.
+     * @throws IllegalArgumentException If the Petri net has bounded places or a place has more tokens than a field can hold.
+     */
+    public LockFreeMonitor(PetriNet petriNet, List<int[]> invariantsTransitions) {
+        this.net = petriNet.getCompiledNet();
+
+        int numberOfPlaces = net.getNumberOfPlaces();
+        int numberOfTransitions = net.getNumberOfTransitions();
+
+        for (int p = 0; p < numberOfPlaces; p++) {
+            if (net.isBounded(p))
+                throw new IllegalArgumentException("LockFreeMonitor does not support bounded places (P" + (p + 1) + ")");
+
+            if (net.getTokens(p) > MAX_TOKENS)
+                throw new IllegalArgumentException("Too many tokens in P" + (p + 1) + " for a field of " + FIELD_BITS + " bits");
+        }
+
+        net.attach();
+
+        int[] order = IntStream.range(0, numberOfPlaces)
+                               .boxed()
+                               .sorted(Comparator.comparingInt(p -> net.getPlaceOwner(p) < 0 ? Integer.MAX_VALUE : net.getPlaceOwner(p)))
+                               .mapToInt(Integer::intValue)
+                               .toArray();
+
+        this.wordOfPlace = new int[numberOfPlaces];
+        this.shiftOfPlace = new int[numberOfPlaces];
+
+        for (int slot = 0; slot < numberOfPlaces; slot++) {
+            wordOfPlace[order[slot]] = slot / FIELDS_PER_WORD;
+            shiftOfPlace[order[slot]] = (slot % FIELDS_PER_WORD) * FIELD_BITS;
+        }
+
+        this.marking = new AtomicLongArray((numberOfPlaces + FIELDS_PER_WORD - 1) / FIELDS_PER_WORD);
+
+        for (int p = 0; p < numberOfPlaces; p++)
+            marking.getAndAdd(wordOfPlace[p], (long) net.getTokens(p) << shiftOfPlace[p]);
+
+        this.consumeWords = new int[numberOfTransitions][];
+        this.consumeTokens = new long[numberOfTransitions][];
+        this.consumeGuards = new long[numberOfTransitions][];
+        this.produceWords = new int[numberOfTransitions][];
+        this.produceTokens = new long[numberOfTransitions][];
+        this.produceGuards = new long[numberOfTransitions][];
+        this.dependents = new int[numberOfTransitions][];
+        this.names = new String[numberOfTransitions];
+        this.waiters = new ArrayList<>(numberOfTransitions);
+
+        for (int t = 1; t <= numberOfTransitions; t++) {
+            TreeMap<Integer, long[]> consume = group(net.getPreSet(t), net.getPreWeights(t));
+            TreeMap<Integer, long[]> produce = group(net.getPostSet(t), net.getPostWeights(t));
+
+            consumeWords[t - 1] = consume.keySet().stream().mapToInt(Integer::intValue).toArray();
+            consumeTokens[t - 1] = consume.values().stream().mapToLong(v -> v[0]).toArray();
+            consumeGuards[t - 1] = consume.values().stream().mapToLong(v -> v[1]).toArray();
+            produceWords[t - 1] = produce.keySet().stream().mapToInt(Integer::intValue).toArray();
+            produceTokens[t - 1] = produce.values().stream().mapToLong(v -> v[0]).toArray();
+            produceGuards[t - 1] = produce.values().stream().mapToLong(v -> v[1]).toArray();
+
+            dependents[t - 1] = net.getDependents(t);
+            names[t - 1] = petriNet.getTransition(t).getName();
+            waiters.add(new ConcurrentLinkedQueue<>());
+        }
+
+        this.timeStamps = new AtomicLongArray(numberOfTransitions);
+
+        long now = System.nanoTime();
+
+        for (int t = 0; t < numberOfTransitions; t++)
+            timeStamps.set(t, isEnabledByMarking(t) ? now : NOT_SENSITIZED);
+
+        this.firedCounts = new FiredCounts(numberOfTransitions, invariantsTransitions, (invariant, count) -> {});
+        this.interrupted = false;
+    }
+
+    /**
+     * Constructor for LockFreeMonitor class. Initializes the monitor with the minimal support T-invariants computed from the incidence matrix of the Petri net.
+     * @param petriNet Petri net to be synchronized.
+     */
+    public LockFreeMonitor(PetriNet petriNet) {
+        this(petriNet, new InvariantAnalyzer(petriNet.getIncidenceMatrix()).computeTInvariants()
+                                                                         .stream()
+                                                                         .map(InvariantAnalyzer::toSupport)
+                                                                         .collect(Collectors.toList()));
+    }
+
+    /**
+     * Groups the places passed as argument by word.
+     * @param places Places to group.
+     * @param weights Tokens of each place.
+     * @return Map of words, in ascending order, to the packed tokens and the guard bits of their places.
+     */
+    private TreeMap<Integer, long[]> group(int[] places, int[] weights) {
+        TreeMap<Integer, long[]> words = new TreeMap<>();
+
+        for (int k = 0; k < places.length; k++) {
+            if (weights[k] == 0)
+                continue;
+
+            long[] word = words.computeIfAbsent(wordOfPlace[places[k]], w -> new long[2]);
+
+            word[0] += (long) weights[k] << shiftOfPlace[places[k]];
+            word[1] |= GUARD << shiftOfPlace[places[k]];
+        }
+
+        return words;
+    }
+
+    /**
+     * Checks if a word has enough tokens for a subtraction.
+     * @param word Word of the marking.
+     * @param tokens Packed tokens to subtract.
+     * @param guards Guard bits of the fields to subtract from.
+     * @return True  if no field borrows
+     *         False otherwise
+     */
+    private static boolean covers(long word, long tokens, long guards) {
+        return (((word | guards) - tokens) & guards) == guards;
+    }
+
+    /**
+     * Checks if the transition passed as argument is enabled by the current marking.
+     * @param t Index of the transition, starting at 0.
+     * @return True  if the transition is enabled
+     *         False otherwise
+     */
+    private boolean isEnabledByMarking(int t) {
+        for (int k = 0; k < consumeWords[t].length; k++)
+            if (!covers(marking.get(consumeWords[t][k]), consumeTokens[t][k], consumeGuards[t][k]))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Takes the tokens of the pre-set of the transition passed as argument, word by word.
+     * If a word has not enough tokens, the words already taken are given back and the dependent transitions are woken.
+     * @param t Index of the transition, starting at 0.
+     * @return True  if the tokens were taken
+     *         False otherwise
+     */
+    private boolean tryConsume(int t) {
+        int[] words = consumeWords[t];
+
+        for (int k = 0; k < words.length; k++) {
+            long word;
+
+            do {
+                word = marking.get(words[k]);
+
+                if (!covers(word, consumeTokens[t][k], consumeGuards[t][k])) {
+                    for (int j = 0; j < k; j++)
+                        marking.getAndAdd(words[j], consumeTokens[t][j]);
+
+                    if (k > 0)
+                        wakeDependents(t);
+
+                    return false;
+                }
+            } while (!marking.compareAndSet(words[k], word, word - consumeTokens[t][k]));
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds the tokens of the post-set of the transition passed as argument.
+     * @param t Index of the transition, starting at 0.
+     * @throws IllegalStateException If a place exceeds the tokens a field can hold.
+     */
+    private void produce(int t) {
+        for (int k = 0; k < produceWords[t].length; k++)
+            if (((marking.getAndAdd(produceWords[t][k], produceTokens[t][k]) + produceTokens[t][k]) & produceGuards[t][k]) != 0)
+                throw new IllegalStateException("A place reached more than " + MAX_TOKENS + " tokens firing " + names[t]);
+    }
+
+    /**
+     * Unparks the first waiter of every transition whose enabling can change when the transition passed as argument fires.
+     * @param t Index of the transition, starting at 0.
+     */
+    private void wakeDependents(int t) {
+        for (int u : dependents[t]) {
+            Thread waiter = waiters.get(u - 1).peek();
+
+            if (waiter != null)
+                LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Unparks the first waiter of the transition passed as argument if the transition is enabled. It is used by a thread
+     * that gives up waiting, which may have taken the wake-up meant for the transition.
+     * @param t Index of the transition, starting at 0.
+     */
+    private void wakeNext(int t) {
+        Thread waiter = waiters.get(t).peek();
+
+        if (waiter != null && isEnabledByMarking(t))
+            LockSupport.unpark(waiter);
+    }
+
+    /**
+     * Updates the time stamps of the timed transitions whose enabling can change when the transition passed as argument
+     * fires. The transition fired starts a new time frame if it is still enabled, and loses its time stamp otherwise;
+     * the other ones enabled that were not sensibilized are sensibilized at the current time. Concurrent firings can
+     * change the marking while it is read, so a sensibilization missed here is taken when a thread checks the time frame
+     * of the transition.
+     * @param t Index of the transition fired, starting at 0.
+     */
+    private void sensitizeDependents(int t) {
+        long now = System.nanoTime();
+
+        if (net.isTimed(t + 1))
+            timeStamps.set(t, isEnabledByMarking(t) ? now : NOT_SENSITIZED);
+
+        for (int u : dependents[t])
+            if (u != t + 1 && net.isTimed(u) && isEnabledByMarking(u - 1))
+                timeStamps.compareAndSet(u - 1, NOT_SENSITIZED, now);
+    }
+
+    /**
+     * Returns the time the transition has to wait until its time frame opens. The transition must be enabled.
+     * A transition that missed its time frame, or whose sensibilization was missed, is sensibilized at the current time.
+     * @param t Index of the transition, starting at 0.
+     * @return Nanoseconds to wait, 0 if the current time is in the time frame or the transition is not timed.
+     */
+    private long timeToWindow(int t) {
+        if (!net.isTimed(t + 1))
+            return 0;
+
+        long now = System.nanoTime();
+        long timeStamp = timeStamps.get(t);
+
+        if (timeStamp == NOT_SENSITIZED) {
+            timeStamps.compareAndSet(t, NOT_SENSITIZED, now);
+            timeStamp = timeStamps.get(t);
+        }
+
+        long time = now - timeStamp;
+
+        if (time > TimeUnit.MILLISECONDS.toNanos(net.getBetaTime(t + 1))) {
+            Logger.logTimed("TIME-OUT - " + names[t] + " (" + TimeUnit.NANOSECONDS.toMillis(time) + "[ms] > " + net.getBetaTime(t + 1) + "[ms])");
+
+            timeStamps.compareAndSet(t, timeStamp, now);
+            time = Math.max(now - timeStamps.get(t), 0);
+        }
+
+        long alfa = TimeUnit.MILLISECONDS.toNanos(net.getAlfaTime(t + 1));
+
+        if (time < alfa) {
+            Logger.logTimed("COOL-DOWN -> " + names[t] + " (" + TimeUnit.NANOSECONDS.toMillis(time) + "[ms] < " + net.getAlfaTime(t + 1) + "[ms])");
+
+            return alfa - time;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Sets the interrupted flag to true and unparks all the waiting threads.
+     */
+    private void setInterrupted() {
+        interrupted = true;
+
+        for (ConcurrentLinkedQueue<Thread> queue : waiters)
+            queue.forEach(LockSupport::unpark);
+    }
+
+    /**
+     * Fires a transition. If the transition is not enabled, the thread parks until other thread fires a transition that enables the transition.
+     * @param transition Transition to be fired.
+     * @param endTransitions Flag to indicate if the transition is a final transition.
+     */
+    @Override
+    public boolean fireTransition(int transition, boolean endTransitions) {
+        return fireTransition(transition, endTransitions, 0, false);
+    }
+
+    /**
+     * Fires a transition only if it can be fired now, without parking.
+     * @param transition Transition to be fired.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    @Override
+    public boolean tryFire(int transition) {
+        return fireTransition(transition, false, System.nanoTime(), true);
+    }
+
+    /**
+     * Fires a transition, parking until it is enabled and in its time frame for the time passed as argument at most.
+     * @param transition Transition to be fired.
+     * @param timeout Maximum time to wait.
+     * @param unit Unit of the timeout.
+     * @return True  if the transition was fired
+     *         False if the time elapsed or the monitor was interrupted
+     */
+    @Override
+    public boolean tryFire(int transition, long timeout, TimeUnit unit) {
+        return fireTransition(transition, false, System.nanoTime() + unit.toNanos(timeout), true);
+    }
+
+    /**
+     * Fires a transition, parking while it is not enabled or before its time frame until the deadline is reached.
+     * @param transition Transition to be fired.
+     * @param endTransitions Flag to indicate if the transition is a final transition.
+     * @param deadline Instant to stop waiting, from System.nanoTime(), ignored if timed is false.
+     * @param timed True to wait until the deadline at most.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    private boolean fireTransition(int transition, boolean endTransitions, long deadline, boolean timed) {
+        int t = transition - 1;
+        Thread current = Thread.currentThread();
+
+        while (!interrupted || endTransitions) {
+            long remaining = timed ? deadline - System.nanoTime() : Long.MAX_VALUE;
+
+            if (isEnabledByMarking(t) || interrupted) {
+                long wait = interrupted ? 0 : timeToWindow(t);
+
+                if (wait > 0) {
+                    if (remaining <= 0) {
+                        wakeNext(t);
+
+                        return false;
+                    }
+
+                    LockSupport.parkNanos(this, Math.min(wait, remaining));
+
+                    if (Thread.interrupted())
+                        setInterrupted();
+
+                    continue;
+                }
+
+                if (tryConsume(t)) {
+                    Logger.logTransition(String.format("FIRED -> T%-2d ON %-35s", transition, Thread.currentThread().getName()));
+
+                    produce(t);
+
+                    sensitizeDependents(t);
+                    firedCounts.fired(transition);
+                    wakeDependents(t);
+
+                    return true;
+                }
+
+                if (interrupted)
+                    return false;
+
+                continue;
+            }
+
+            if (remaining <= 0) {
+                wakeNext(t);
+
+                return false;
+            }
+
+            waiters.get(t).add(current);
+
+            if (!isEnabledByMarking(t) && !interrupted) {
+                if (timed)
+                    LockSupport.parkNanos(this, remaining);
+                else
+                    LockSupport.park(this);
+            }
+
+            waiters.get(t).remove(current);
+
+            if (Thread.interrupted())
+                setInterrupted();
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the transition passed as argument is enabled by the packed marking, without its time frame.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is enabled
+     *         False otherwise
+     */
+    @Override
+    public boolean isEnabled(int transition) {
+        return isEnabledByMarking(transition - 1);
+    }
+
+    /**
+     * Checks if the transition passed as argument has a time frame.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is timed
+     *         False otherwise
+     */
+    @Override
+    public boolean isTimed(int transition) {
+        return net.isTimed(transition);
+    }
+
+    /**
+     * Getter for the interrupted flag.
+     * @return True if the thread was interrupted.
+     *         False otherwise.
+     */
+    @Override
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+
+    /**
+     * Interrupts the monitor, waking all the threads waiting for a transition.
+     */
+    @Override
+    public void interrupt() {
+        setInterrupted();
+    }
+
+    /**
+     * Returns a snapshot of the number of threads parked in the waiters of each transition.
+     * @return Array with the number of waiters of each transition, the transition 1 at index 0.
+     */
+    @Override
+    public int[] getWaitersCount() {
+        int[] count = new int[waiters.size()];
+
+        for (int t = 0; t < waiters.size(); t++)
+            count[t] = waiters.get(t).size();
+
+        return count;
+    }
+
+    /**
+     * Returns the transitions fired count map.
+     * @return Unmodifiable snapshot of the transitions fired count.
+     */
+    @Override
+    public Map<Integer, Integer> getTransitionsFiredCount() {
+        return firedCounts.getTransitionsFiredCount();
+    }
+
+    /**
+     * Returns the invariants transitions fired count map.
+     * @return Unmodifiable snapshot of the invariants fired count.
+     */
+    @Override
+    public Map<int[], Integer> getInvariantsTransitionsFiredCount() {
+        return firedCounts.getInvariantsFiredCount();
+    }
+
+    /**
+     * Returns the tokens of every place. Each word is read atomically, so while transitions are being fired the marking
+     * can miss the tokens of a firing in progress.
+     * @return Array with the tokens of each place, starting at 0.
+     */
+    public int[] getMarking() {
+        int[] tokens = new int[wordOfPlace.length];
+
+        for (int p = 0; p < tokens.length; p++)
+            tokens[p] = (int) ((marking.get(wordOfPlace[p]) >>> shiftOfPlace[p]) & ((1L << FIELD_BITS) - 1));
+
+        return tokens;
+    }
+}
@@ -0,0 +1,105 @@
+package com.picasso.Monitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.picasso.Config;
+import com.picasso.Analysis.InvariantAnalyzer;
+import com.picasso.PetriNet.PetriNet;
+
+/**
+ * LockFreeMonitorStress class fires the transitions of the Petri net of Config with the lock-free engine from many threads,
+ * without time frames, until the requested number of firings is reached. Once every thread has finished, the marking is
+ * checked against the P-invariants of the net and against the state equation with the fired counts.
+ * Usage: LockFreeMonitorStress [firings] [threads per transition]. The exit status is 1 if a check fails.
+ */
+public class LockFreeMonitorStress {
+    /**
+     * Main method of the stress test.
+     * @param args Number of firings, 5000000 by default, and number of threads per transition, 2 by default.
+     */
+    public static void main(String[] args) {
+        long firings = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000L;
+        int threadsPerTransition = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        PetriNet petriNet = new PetriNet("PetriNet", Config.INITIAL_MARKING, Config.INCIDENCE_MATRIX, Config.NUMBER_OF_PLACES, Config.NUMBER_OF_TRANSITIONS);
+        LockFreeMonitor monitor = new LockFreeMonitor(petriNet);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 1; t <= Config.NUMBER_OF_TRANSITIONS; t++) {
+            final int transition = t;
+
+            for (int i = 0; i < threadsPerTransition; i++)
+                threads.add(new Thread(() -> {
+                    while (monitor.fireTransition(transition, false));
+                }, "[Stress - T" + t + " - Thread " + i + "]"));
+        }
+
+        long start = System.nanoTime();
+
+        threads.forEach(Thread::start);
+
+        try {
+            while (total(monitor.getTransitionsFiredCount()) < firings)
+                Thread.sleep(10);
+
+            threads.forEach(Thread::interrupt);
+
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        Map<Integer, Integer> fired = monitor.getTransitionsFiredCount();
+        long total = total(fired);
+        int[] marking = monitor.getMarking();
+        boolean valid = true;
+
+        System.out.printf("FIRINGS -> %d in %.2fms (%.0f firings/s) with %d threads%n", total, elapsed / 1e6, total * 1e9 / elapsed, threads.size());
+        System.out.printf("MARKING -> %s%n", Arrays.toString(marking));
+
+        for (int[] invariant : new InvariantAnalyzer(Config.INCIDENCE_MATRIX).computePInvariants()) {
+            long initial = 0;
+            long current = 0;
+
+            for (int p = 0; p < invariant.length; p++) {
+                initial += (long) invariant[p] * Config.INITIAL_MARKING[p];
+                current += (long) invariant[p] * marking[p];
+            }
+
+            if (initial != current) {
+                System.out.printf("P-INVARIANT VIOLATION -> %s expected %d but was %d%n", Arrays.toString(InvariantAnalyzer.toSupport(invariant)), initial, current);
+                valid = false;
+            }
+        }
+
+        for (int p = 0; p < marking.length; p++) {
+            long expected = Config.INITIAL_MARKING[p];
+
+            for (int t = 0; t < Config.NUMBER_OF_TRANSITIONS; t++)
+                expected += (long) Config.INCIDENCE_MATRIX[p][t] * fired.get(t + 1);
+
+            if (expected != marking[p]) {
+                System.out.printf("STATE EQUATION VIOLATION -> P%d expected %d but was %d%n", p + 1, expected, marking[p]);
+                valid = false;
+            }
+        }
+
+        System.out.println(valid ? "STRESS -> OK" : "STRESS -> FAILED");
+
+        System.exit(valid ? 0 : 1);
+    }
+
+    /**
+     * Returns the total number of firings.
+     * @param fired Fired count of each transition.
+     * @return Sum of the fired counts.
+     */
+    private static long total(Map<Integer, Integer> fired) {
+        return fired.values().stream().mapToLong(Integer::longValue).sum();
+    }
+}
@@ -1,120 +1,628 @@
 package com.picasso.Monitor;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import com.picasso.Analysis.InvariantAnalyzer;
+import com.picasso.Data.Logger;
+import com.picasso.PetriNet.BitMask;
+import com.picasso.PetriNet.CompiledPetriNet;
 import com.picasso.PetriNet.PetriNet;
 import com.picasso.PetriNet.Transition;
 import com.picasso.Policy.Policy;
+import com.picasso.Policy.PolicyContext;
 
 /**
  * Monitor class is used to synchronize the threads that fire transitions.
+ * Each conflict cluster of the Petri net has its own lock and wait queues, so transitions of different clusters
+ * are fired in parallel. A thread waits holding only the lock of the cluster of its transition, and takes the locks
+ * of the other clusters touched by the firing in ascending order before firing it.
+ * Waiting threads are parked in a queue per transition. After a firing the thread holding the mutexes passes the baton
+ * to the waiter chosen by the policy: if the chosen transition can be fired with the mutexes already held, it is fired
+ * on behalf of the waiter, which returns without taking any mutex; otherwise the waiter is woken to check it again.
+ * Threads waiting for the time frame of a timed transition are parked in the same queues. The opening and closing of
+ * each time frame are scheduled as deadlines: the opening wakes the first waiter of the transition, and the closing
+ * sensibilizes the transition again if it is still enabled. A deadline of a time frame restarted since it was scheduled
+ * schedules the current time frame instead.
+ * Firings can also be requested asynchronously: the request is queued as a waiter without a thread, and when it is
+ * chosen it is fired on its behalf or checked again by a task of the executor, which completes its future outside the mutexes.
+ * A transition with a job is fired in two phases: the firing starts it and hands the job to the job executor, and the
+ * completion of the job produces the post-set and passes the baton, so the thread firing it does not do the work.
  */
-public class Monitor {
+public class Monitor implements MonitorInterface {
     // Petri net to be synchronized
     private final PetriNet petriNet;
-    // Mutex for synchronization
-    private final ReentrantLock mutex;
-    // Condition queue for each transition
-    private final Condition[] waitQueue;
-    // Condition queue for cool down
-    private final Condition coolDownQueue;
-    // Map of fired transitions and their count
-    private final Map<Integer, Integer> transitionsFiredCount;
-    // Map of invariants and their count
-    private final Map<int[], Integer> invariantsTransitionsFiredCount;
-    // Map of transitions fired in invariant cicle
-    private final Map<int[], Map<Integer, Integer>> transitionsFiredInInvariantCicle;
+    // Conflict cluster of each transition, starting at 0
+    private final int[] clusters;
+    // Clusters locked to fire each transition, sorted
+    private final int[][] lockSets;
+    // Mutex of each conflict cluster
+    private final ReentrantLock[] locks;
+    // Queue of waiters for each transition, guarded by the mutex of its cluster
+    private final ArrayDeque<Waiter>[] waitQueue;
+    // Transitions of each cluster, one bit per transition
+    private final long[][] clusterTransitions;
+    // Transitions of each cluster, starting at 1
+    private final int[][] clusterTransitionsList;
+    // Transitions whose enabling can change when each transition fires, starting at 1
+    private final int[][] dependents;
+    // Time stamp of the last time frame scheduled for each transition, guarded by the mutex of its cluster
+    private final long[] scheduledTimeStamps;
+    // Scheduler of the opening and closing of the time frames
+    private final DeadlineScheduler scheduler;
+    // Transitions with threads waiting in their queue, one bit per transition, changed atomically
+    private final long[] waitingTransitions;
+    // Scratch mask of each cluster for the transitions that are enabled and waiting
+    private final long[][] transitionsAbleToFire;
+    // Counts of fired transitions and invariants
+    private final FiredCounts firedCounts;
     // Policy for deciding which transition to fire next
-    private Policy policy;
+    private volatile Policy policy;
+    // Read-only view of the state of the monitor given to the policy
+    private final PolicyContext policyContext;
+    // Executor completing the asynchronous firings
+    private volatile Executor asyncExecutor;
+    // Job of each transition fired in two phases, null for the transitions fired at once
+    private final Runnable[] jobs;
+    // Executor running the jobs of the firings in two phases
+    private volatile Executor jobExecutor;
+    // Number of jobs started and not completed, guarded by the jobs lock
+    private int runningJobs;
+    // Lock of the number of jobs running
+    private final ReentrantLock jobsLock;
+    // Condition signalled when no job is running
+    private final Condition noJobs;
     // Flag to indicate if the monitor was interrupted
-    private boolean interrupted;
+    private volatile boolean interrupted;
 
     /**
-     * Returns an array of transitions that are waiting to be fired.
-     * @return Array of transitions that are waiting to be fired.
+     * Waiter states enumeration
      */
-    private int[] getWaitTransitions() {
-        try {
-            mutex.lock();
+    private enum WaiterState {
+        // The thread is parked
+        WAITING,
+        // The thread was woken and has to check its transition again
+        SIGNALLED,
+        // The transition was fired on behalf of the thread
+        GRANTED
+    };
 
-            return IntStream.range(0, waitQueue.length)
-                            .map(i -> mutex.hasWaiters(waitQueue[i]) ? 1 : 0)
-                            .toArray();
-        } finally {
-            mutex.unlock();
+    /**
+     * Waiter class is the node of a thread parked, or of an asynchronous request, in the queue of a transition.
+     */
+    private static final class Waiter {
+        // Thread parked, null for an asynchronous request
+        private final Thread thread;
+        // Future of the asynchronous request, null for a thread
+        private final CompletableFuture<Boolean> future;
+        // State of the waiter, changed while holding the mutex of the cluster of the transition
+        private volatile WaiterState state;
+
+        /**
+         * Constructor for Waiter class of a thread.
+         * @param thread Thread parked.
+         */
+        private Waiter(Thread thread) {
+            this.thread = thread;
+            this.future = null;
+            this.state = WaiterState.WAITING;
+        }
+
+        /**
+         * Constructor for Waiter class of an asynchronous request.
+         * @param future Future of the request.
+         */
+        private Waiter(CompletableFuture<Boolean> future) {
+            this.thread = null;
+            this.future = future;
+            this.state = WaiterState.WAITING;
         }
     }
 
     /**
-     * Returns an array of transitions that are able to fire.
-     * @param transitions Array of transitions that are waiting to be fired.
-     * @return Array of transitions that are able to fire.
+     * Context class is the view of the monitor given to the policy. It reads the counts, the enabling and the time
+     * frames in place, without copying them.
      */
-    private int[] getTransitionsAbleToFire(int[] transitions) {
-        try {
+    private final class Context implements PolicyContext {
+        @Override
+        public int getNumberOfTransitions() {
+            return clusters.length;
+        }
+
+        @Override
+        public boolean isEnabled(int transition) {
+            return petriNet.isEnabled(transition);
+        }
+
+        @Override
+        public boolean isWaiting(int transition) {
+            return BitMask.get(waitingTransitions, transition - 1);
+        }
+
+        @Override
+        public long getFiredCount(int transition) {
+            return firedCounts.getFiredCount(transition);
+        }
+
+        @Override
+        public int getNumberOfInvariants() {
+            return firedCounts.getNumberOfInvariants();
+        }
+
+        @Override
+        public long getInvariantFiredCount(int invariant) {
+            return firedCounts.getInvariantFiredCount(invariant);
+        }
+
+        @Override
+        public boolean isInInvariant(int invariant, int transition) {
+            return firedCounts.isInInvariant(invariant, transition);
+        }
+
+        @Override
+        public boolean isTimed(int transition) {
+            return petriNet.getCompiledNet().isTimed(transition);
+        }
+
+        @Override
+        public long getWindowOpening(int transition) {
+            return petriNet.getCompiledNet().getWindowOpening(transition);
+        }
+
+        @Override
+        public long getWindowClosing(int transition) {
+            return petriNet.getCompiledNet().getWindowClosing(transition);
+        }
+
+        @Override
+        public int getNumberOfPlaces() {
+            return petriNet.getCompiledNet().getNumberOfPlaces();
+        }
+
+        @Override
+        public boolean tryGetMarking(int[] marking) {
+            return petriNet.getCompiledNet().tryGetMarking(marking);
+        }
+
+        @Override
+        public boolean isEnabled(int[] marking, int transition) {
+            return petriNet.getCompiledNet().isEnabled(marking, transition);
+        }
+
+        @Override
+        public void fire(int[] marking, int transition, int[] result) {
+            petriNet.getCompiledNet().fire(marking, transition, result);
+        }
+    }
+
+    /**
+     * Adds a waiter to the queue of the transition passed as argument. The mutex of the cluster of the transition must be held.
+     * @param transition Transition to wait for.
+     * @param waiter Waiter to add.
+     */
+    private void enqueue(int transition, Waiter waiter) {
+        if (waitQueue[transition - 1].isEmpty())
+            BitMask.setAtomic(waitingTransitions, transition - 1);
+
+        waitQueue[transition - 1].addLast(waiter);
+    }
+
+    /**
+     * Parks the thread in the queue of the transition passed as argument, releasing the mutex of its cluster, which must be held.
+     * If the transition is fired on behalf of the thread the mutex is not taken again. A wake-up that arrives after the
+     * deadline is still honoured, so no signal is lost.
+     * @param transition Transition to wait for.
+     * @param deadline Instant to stop waiting, from System.nanoTime(), ignored if timed is false.
+     * @param timed True to wait until the deadline at most.
+     * @return GRANTED    if the transition was fired on behalf of the thread, the mutex is not held
+     *         SIGNALLED  if the thread has to check the transition again, the mutex is held
+     *         WAITING    if the deadline was reached, the thread left the queue and the mutex is held
+     * @throws InterruptedException If the thread is interrupted while waiting, the mutex is held.
+     */
+    private WaiterState awaitTransition(int transition, long deadline, boolean timed) throws InterruptedException {
+        ReentrantLock mutex = locks[clusters[transition - 1]];
+        Waiter waiter = new Waiter(Thread.currentThread());
+        boolean interruptedWaiting = false;
+
+        enqueue(transition, waiter);
+
+        mutex.unlock();
+
+        while (waiter.state == WaiterState.WAITING) {
+            if (!timed)
+                LockSupport.park(this);
+            else if (deadline - System.nanoTime() > 0)
+                LockSupport.parkNanos(this, deadline - System.nanoTime());
+            else
+                break;
+
+            if (Thread.interrupted()) {
+                interruptedWaiting = true;
+                break;
+            }
+        }
+
+        if (waiter.state != WaiterState.GRANTED) {
             mutex.lock();
 
-            return IntStream.range(0, waitQueue.length)
-                            .map(i -> (petriNet.getEnableTransitions()[i] == 1 && transitions[i] == 1) ? (i + 1) : 0)
-                            .filter(element -> element != 0)
-                            .toArray();
-        } finally {
+            if (waiter.state == WaiterState.WAITING) {
+                waitQueue[transition - 1].remove(waiter);
+
+                if (waitQueue[transition - 1].isEmpty())
+                    BitMask.clearAtomic(waitingTransitions, transition - 1);
+
+                if (interruptedWaiting)
+                    throw new InterruptedException();
+
+                return WaiterState.WAITING;
+            }
+
+            if (waiter.state == WaiterState.SIGNALLED) {
+                if (interruptedWaiting)
+                    throw new InterruptedException();
+
+                return WaiterState.SIGNALLED;
+            }
+
             mutex.unlock();
         }
+
+        if (interruptedWaiting)
+            Thread.currentThread().interrupt();
+
+        return WaiterState.GRANTED;
+    }
+
+    /**
+     * Wakes the first waiter of the transition passed as argument. The mutex of the cluster of the transition must be held.
+     * An asynchronous request is completed, if it was granted, or checked again by a task of the executor.
+     * @param transition Transition with waiters.
+     * @param state New state of the waiter, SIGNALLED or GRANTED.
+     */
+    private void wakeWaiter(int transition, WaiterState state) {
+        Waiter waiter = waitQueue[transition - 1].pollFirst();
+
+        if (waitQueue[transition - 1].isEmpty())
+            BitMask.clearAtomic(waitingTransitions, transition - 1);
+
+        waiter.state = state;
+
+        if (waiter.future == null)
+            LockSupport.unpark(waiter.thread);
+        else if (state == WaiterState.GRANTED)
+            asyncExecutor.execute(() -> waiter.future.complete(true));
+        else
+            asyncExecutor.execute(() -> fireAsync(transition, waiter.future));
+    }
+
+    /**
+     * Checks if the mutexes of the lock set of a transition are enough to fire another transition.
+     * @param held Transition whose lock set is held.
+     * @param transition Transition to fire.
+     * @return True  if every cluster of the lock set of the transition is in the lock set held
+     *         False otherwise
+     */
+    private boolean isLockSetHeld(int held, int transition) {
+        for (int c : lockSets[transition - 1])
+            if (Arrays.binarySearch(lockSets[held - 1], c) < 0)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Returns the transitions of the cluster that are enabled and have threads waiting to fire them.
+     * The mutex of the cluster must be held.
+     * @param cluster Cluster to check.
+     * @return Scratch mask of the cluster with the transitions able to fire, or null if there are none.
+     */
+    private long[] getTransitionsAbleToFire(int cluster) {
+        long[] ableToFire = transitionsAbleToFire[cluster];
+
+        if (!BitMask.and(clusterTransitions[cluster], waitingTransitions, ableToFire)
+            || !petriNet.getCompiledNet().andEnabled(ableToFire, ableToFire))
+            return null;
+
+        return ableToFire;
     }
 
     /**
-     * Updates the count of fired transitions and invariants.
-     * @param transitionFired Transition that was fired.
+     * Takes the mutexes of the lock set of the transition other than the one of its own cluster, which must be held.
+     * The mutexes of lower clusters are only tried; if one is busy every mutex is released and the whole lock set is
+     * taken in ascending order, so the state of the transition has to be checked again.
+     * @param transition Transition to fire.
+     * @return True  if the mutexes were taken without releasing the one of the cluster of the transition
+     *         False if every mutex was released and taken again
      */
-    private void UpdateFiredCounts(int transitionFired) {
+    private boolean lockOthers(int transition) {
+        int cluster = clusters[transition - 1];
+        int[] lockSet = lockSets[transition - 1];
+
+        for (int i = 0; i < lockSet.length; i++) {
+            if (lockSet[i] == cluster)
+                continue;
+
+            if (lockSet[i] > cluster) {
+                locks[lockSet[i]].lock();
+
+                continue;
+            }
+
+            if (!locks[lockSet[i]].tryLock()) {
+                for (int j = 0; j < i; j++)
+                    locks[lockSet[j]].unlock();
+
+                locks[cluster].unlock();
+
+                for (int c : lockSet)
+                    locks[c].lock();
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases the mutexes of the lock set of the transition other than the one of its own cluster.
+     * @param transition Transition fired.
+     */
+    private void unlockOthers(int transition) {
+        for (int c : lockSets[transition - 1])
+            if (c != clusters[transition - 1])
+                locks[c].unlock();
+    }
+
+    /**
+     * Checks if the transition can be fired now: it is enabled and, if it is timed, the current time is in its time frame.
+     * @param transition Transition to check.
+     * @return True  if the transition can be fired
+     *         False otherwise
+     */
+    private boolean isFireable(int transition) {
+        if (!petriNet.isEnabled(transition))
+            return false;
+
+        Transition.TimedState timedState = petriNet.checkTimedStateTransition(transition);
+
+        return timedState == Transition.TimedState.NO_TIMED || timedState == Transition.TimedState.IN_WINDOW;
+    }
+
+    /**
+     * Wakes all the threads in the wait queues of the cluster passed as argument. The mutex of the cluster must be held.
+     * @param cluster Cluster to signal.
+     */
+    private void signalAllCluster(int cluster) {
+        for (int t : clusterTransitionsList[cluster])
+            while (!waitQueue[t - 1].isEmpty())
+                wakeWaiter(t, WaiterState.SIGNALLED);
+    }
+
+    /**
+     * Sets the interrupted flag to true and signals all the threads in the wait queues. No mutex must be held.
+     */
+    private void setInterrupted() {
+        interrupted = true;
+
+        scheduler.stop();
+
+        for (int c = 0; c < locks.length; c++) {
+            try {
+                locks[c].lock();
+
+                signalAllCluster(c);
+            } finally {
+                locks[c].unlock();
+            }
+        }
+    }
+
+    /**
+     * Passes the baton, in each cluster of the lock set of the transition fired, to the waiting transition chosen by the policy.
+     * If the transition chosen can be fired with the mutexes held it is fired on behalf of its first waiter, and the
+     * firing is followed by a decision in its own lock set without firing again; otherwise the waiter is signalled.
+     * The mutexes of the lock set must be held.
+     * @param transition Transition fired.
+     * @param grant True to fire the transition chosen on behalf of its waiter when possible.
+     */
+    private void signalNext(int transition, boolean grant) {
+        for (int c : lockSets[transition - 1]) {
+            long[] ableToFire = getTransitionsAbleToFire(c);
+
+            if (ableToFire == null)
+                continue;
+
+            int nextTransition = policy.decide(ableToFire, policyContext);
+
+            if (nextTransition <= 0)
+                continue;
+
+            if (grant && isLockSetHeld(transition, nextTransition) && isFireable(nextTransition)
+                && fire(nextTransition, waiterName(nextTransition))) {
+                wakeWaiter(nextTransition, WaiterState.GRANTED);
+
+                signalNext(nextTransition, false);
+            } else
+                wakeWaiter(nextTransition, WaiterState.SIGNALLED);
+        }
+    }
+
+    /**
+     * Returns the name of the first waiter of the transition passed as argument, which must have waiters.
+     * The mutex of the cluster of the transition must be held.
+     * @param transition Transition with waiters.
+     * @return Name of the thread parked, or of the current thread for an asynchronous request.
+     */
+    private String waiterName(int transition) {
+        Thread thread = waitQueue[transition - 1].peekFirst().thread;
+
+        return (thread == null ? Thread.currentThread() : thread).getName();
+    }
+
+    /**
+     * Fires the transition passed as argument on behalf of the current thread.
+     * The mutexes of the lock set of the transition must be held.
+     * @param transition Transition to fire.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    private boolean fire(int transition) {
+        return fire(transition, Thread.currentThread().getName());
+    }
+
+    /**
+     * Fires the transition passed as argument, logs and counts the firing and schedules the time frames of the timed
+     * transitions sensibilized by it. The firing is logged while the mutexes are held, so the log keeps the order of
+     * the firings even when a waiter returns after the firings its transition enabled.
+     * The mutexes of the lock set of the transition must be held.
+     * @param transition Transition to fire.
+     * @param firer Name of the thread the transition is fired for.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    private boolean fire(int transition, String firer) {
+        Runnable job = jobs[transition - 1];
+
+        if (!(job == null ? petriNet.fireTransition(transition) : petriNet.startTransition(transition)))
+            return false;
+
+        Logger.logTransition(String.format("FIRED -> T%-2d ON %-35s", transition, firer));
+
+        firedCounts.fired(transition);
+
+        for (int t : dependents[transition - 1])
+            scheduleTimeFrame(t);
+
+        if (job != null)
+            startJob(transition, job);
+
+        return true;
+    }
+
+    /**
+     * Hands the job of a firing started to the job executor, which completes the firing once the job is done.
+     * @param transition Transition started.
+     * @param job Job of the transition.
+     */
+    private void startJob(int transition, Runnable job) {
+        jobsLock.lock();
+
         try {
-            mutex.lock();
-            System.out.println("Thread " + Thread.currentThread().getName() + " in UpdateFiredCounts");
+            runningJobs++;
+        } finally {
+            jobsLock.unlock();
+        }
 
-            transitionsFiredCount.put(transitionFired, transitionsFiredCount.get(transitionFired) + 1);
+        jobExecutor.execute(() -> {
+            try {
+                job.run();
+            } finally {
+                complete(transition);
+            }
+        });
+    }
 
-            transitionsFiredInInvariantCicle.keySet().stream()
-                .filter(i -> Arrays.stream(i).anyMatch(t -> t == transitionFired))
-                .forEach(invariant -> {
-                    transitionsFiredInInvariantCicle.get(invariant).put(transitionFired, transitionsFiredInInvariantCicle.get(invariant).get(transitionFired) + 1);
-                });
+    /**
+     * Completes a firing started, producing the post-set of the transition, scheduling the time frames sensibilized
+     * and passing the baton to the waiters of the transitions enabled. No mutex must be held.
+     * @param transition Transition to complete.
+     */
+    private void complete(int transition) {
+        int[] lockSet = lockSets[transition - 1];
 
-            invariantsTransitionsFiredCount.keySet().stream()
-                .filter(i -> Arrays.stream(i).anyMatch(t -> t == transitionFired))
-                .forEach(invariant -> {
-                    if (Arrays.stream(invariant).allMatch(t -> transitionsFiredInInvariantCicle.get(invariant).get(t) > 0)) {
-                        invariantsTransitionsFiredCount.put(invariant, invariantsTransitionsFiredCount.get(invariant) + 1);
+        for (int c : lockSet)
+            locks[c].lock();
 
-                        transitionsFiredInInvariantCicle.get(invariant).keySet()
-                            .forEach(t -> transitionsFiredInInvariantCicle.get(invariant).put(t, transitionsFiredInInvariantCicle.get(invariant).get(t) - 1));
-                    }
-                });
+        try {
+            petriNet.completeTransition(transition);
+
+            for (int t : dependents[transition - 1])
+                scheduleTimeFrame(t);
+
+            if (!isInterrupted())
+                signalNext(transition, true);
         } finally {
-            System.out.println("Thread " + Thread.currentThread().getName() + " out UpdateFiredCounts");
-            mutex.unlock();
+            for (int i = lockSet.length - 1; i >= 0; i--)
+                locks[lockSet[i]].unlock();
+
+            jobsLock.lock();
+
+            try {
+                if (--runningJobs == 0)
+                    noJobs.signalAll();
+            } finally {
+                jobsLock.unlock();
+            }
         }
     }
 
     /**
-     * Sets the interrupted flag to true and signals all the threads in the wait queue.
+     * Schedules the opening and closing of the current time frame of the transition passed as argument, if it is
+     * timed and enabled and the time frame was not scheduled yet. The mutex of the cluster of the transition must be held.
+     * @param transition Transition to schedule.
      */
-    private void setInterrupted() {
+    private void scheduleTimeFrame(int transition) {
+        CompiledPetriNet compiledNet = petriNet.getCompiledNet();
+
+        if (!compiledNet.isTimed(transition) || !petriNet.isEnabled(transition))
+            return;
+
+        long timeStamp = compiledNet.getTimeStamp(transition);
+
+        if (scheduledTimeStamps[transition - 1] == timeStamp)
+            return;
+
+        scheduledTimeStamps[transition - 1] = timeStamp;
+        scheduler.schedule(transition, timeStamp, compiledNet.getWindowOpening(transition), compiledNet.getWindowClosing(transition));
+    }
+
+    /**
+     * Handles a deadline of the time frame of a transition, ignoring it if the transition is not enabled. If the transition
+     * was sensibilized again after the deadline was scheduled, the current time frame is scheduled instead. When the time
+     * frame opens the first waiter of the transition is woken. When it closes the transition is sensibilized again and its
+     * new time frame is scheduled.
+     * @param transition Timed transition.
+     * @param timeStamp Time stamp of the transition when the deadline was scheduled.
+     * @param opening True if the time frame opens, false if it closes.
+     */
+    private void onDeadline(int transition, long timeStamp, boolean opening) {
+        ReentrantLock mutex = locks[clusters[transition - 1]];
+
+        mutex.lock();
+
         try {
-            mutex.lock();
+            if (isInterrupted() || !petriNet.isEnabled(transition))
+                return;
 
-            interrupted = true;
+            if (petriNet.getCompiledNet().getTimeStamp(transition) != timeStamp) {
+                scheduleTimeFrame(transition);
 
-            Arrays.stream(waitQueue).forEach(c -> c.signalAll());
-            
-            coolDownQueue.signalAll();  
+                return;
+            }
+
+            if (opening) {
+                if (!waitQueue[transition - 1].isEmpty())
+                    wakeWaiter(transition, WaiterState.SIGNALLED);
+
+                return;
+            }
+
+            petriNet.resensitizeTransition(transition);
+            scheduleTimeFrame(transition);
         } finally {
             mutex.unlock();
         }
@@ -126,34 +634,109 @@ public class Monitor {
      * @param policy Policy for deciding which transition to fire next.
      * @param invariantsTransitions List of invariants and their transitions.
      */
+    @SuppressWarnings("unchecked")
     public Monitor(PetriNet petriNet, Policy policy, List<int[]> invariantsTransitions) {
         this.petriNet = petriNet;
         this.policy = policy;
+        this.asyncExecutor = ForkJoinPool.commonPool();
+        this.jobExecutor = ForkJoinPool.commonPool();
+        this.runningJobs = 0;
+        this.jobsLock = new ReentrantLock();
+        this.noJobs = jobsLock.newCondition();
         this.interrupted = false;
 
-        this.mutex = new ReentrantLock();
+        CompiledPetriNet compiledNet = petriNet.getCompiledNet();
 
-        this.transitionsFiredCount = IntStream.range(1, petriNet.getNumberOfTransitions() + 1)
-                                              .collect(HashMap::new, (m, v) -> m.put(v, 0), HashMap::putAll);
+        compiledNet.attach();
 
-        this.invariantsTransitionsFiredCount = IntStream.range(0, invariantsTransitions.size())
-                                                        .collect(HashMap::new, (m, v) -> m.put(invariantsTransitions.get(v), 0), HashMap::putAll);
+        int numberOfClusters = compiledNet.getNumberOfClusters();
 
-        this.transitionsFiredInInvariantCicle = IntStream.range(0, invariantsTransitions.size())
-                                                         .collect(HashMap::new, (m, v) -> m.put(invariantsTransitions.get(v), new HashMap<Integer, Integer>()), HashMap::putAll);
+        this.clusters = IntStream.range(1, petriNet.getNumberOfTransitions() + 1)
+                                 .map(compiledNet::getConflictCluster)
+                                 .toArray();
 
-        transitionsFiredInInvariantCicle.keySet().stream()
-            .forEach(invariant -> {
-                for (int transition : invariant) {
-                    transitionsFiredInInvariantCicle.get(invariant).put(transition, 0);
-                }
-            });
+        this.lockSets = IntStream.range(1, petriNet.getNumberOfTransitions() + 1)
+                                 .mapToObj(compiledNet::getLockSet)
+                                 .toArray(int[][]::new);
+
+        this.locks = IntStream.range(0, numberOfClusters)
+                              .mapToObj(i -> new ReentrantLock())
+                              .toArray(ReentrantLock[]::new);
+
+        this.firedCounts = new FiredCounts(petriNet.getNumberOfTransitions(), invariantsTransitions,
+                                           (invariant, count) -> this.policy.onInvariantCompleted(invariant, count));
+        this.policyContext = new Context();
+        this.jobs = new Runnable[petriNet.getNumberOfTransitions()];
 
         this.waitQueue = IntStream.range(0, petriNet.getNumberOfTransitions())
-                                  .mapToObj(i -> mutex.newCondition())
-                                  .toArray(Condition[]::new);
+                                  .mapToObj(i -> new ArrayDeque<Waiter>())
+                                  .toArray(ArrayDeque[]::new);
+
+        this.clusterTransitions = new long[numberOfClusters][];
+        this.transitionsAbleToFire = new long[numberOfClusters][];
+
+        for (int c = 0; c < numberOfClusters; c++) {
+            clusterTransitions[c] = BitMask.create(petriNet.getNumberOfTransitions());
+            transitionsAbleToFire[c] = BitMask.create(petriNet.getNumberOfTransitions());
+        }
+
+        for (int t = 0; t < petriNet.getNumberOfTransitions(); t++)
+            BitMask.set(clusterTransitions[clusters[t]], t);
+
+        this.waitingTransitions = BitMask.create(petriNet.getNumberOfTransitions());
+
+        this.clusterTransitionsList = Arrays.stream(clusterTransitions)
+                                            .map(BitMask::toTransitions)
+                                            .toArray(int[][]::new);
+
+        this.dependents = IntStream.range(1, petriNet.getNumberOfTransitions() + 1)
+                                   .mapToObj(compiledNet::getDependents)
+                                   .toArray(int[][]::new);
 
-        this.coolDownQueue = mutex.newCondition();
+        this.scheduledTimeStamps = new long[petriNet.getNumberOfTransitions()];
+        this.scheduler = new DeadlineScheduler("[Monitor - Deadlines]", this::onDeadline);
+
+        Arrays.fill(scheduledTimeStamps, Long.MIN_VALUE);
+
+        for (int t = 1; t <= petriNet.getNumberOfTransitions(); t++)
+            scheduleTimeFrame(t);
+
+        policy.init(policyContext);
+        scheduler.start();
+    }
+
+    /**
+     * Constructor for Monitor class. Initializes the monitor with the minimal support T-invariants computed from the incidence matrix of the Petri net.
+     * @param petriNet Petri net to be synchronized.
+     * @param policy Policy for deciding which transition to fire next.
+     */
+    public Monitor(PetriNet petriNet, Policy policy) {
+        this(petriNet, policy, new InvariantAnalyzer(petriNet.getIncidenceMatrix()).computeTInvariants()
+                                                                                 .stream()
+                                                                                 .map(InvariantAnalyzer::toSupport)
+                                                                                 .collect(Collectors.toList()));
+    }
+
+    /**
+     * Checks if the transition passed as argument is enabled by the current marking, without its time frame.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is enabled
+     *         False otherwise
+     */
+    @Override
+    public boolean isEnabled(int transition) {
+        return petriNet.isEnabled(transition);
+    }
+
+    /**
+     * Checks if the transition passed as argument has a time frame.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is timed
+     *         False otherwise
+     */
+    @Override
+    public boolean isTimed(int transition) {
+        return petriNet.isTimedTransition(transition);
     }
 
     /**
@@ -161,56 +744,227 @@ public class Monitor {
      * @return True if the thread was interrupted.
      *         False otherwise.
      */
+    @Override
     public boolean isInterrupted() {
-        try {
-            mutex.lock();
-            
-            return interrupted;
-        } finally {
-            mutex.unlock();
-        }
+        return interrupted;
     }
 
     /**
      * Returns the transitions fired count map.
-     * @return Transitions fired count map.
+     * @return Unmodifiable snapshot of the transitions fired count.
      */
+    @Override
     public Map<Integer, Integer> getTransitionsFiredCount() {
-        try {
-            mutex.lock();
-            
-            return transitionsFiredCount;
-        } finally {
-            mutex.unlock();
-        }
+        return firedCounts.getTransitionsFiredCount();
     }
 
     /**
      * Returns the invariants transitions fired count map.
-     * @return Invariants transitions fired count map.
+     * @return Unmodifiable snapshot of the invariants fired count.
      */
+    @Override
     public Map<int[], Integer> getInvariantsTransitionsFiredCount() {
+        return firedCounts.getInvariantsFiredCount();
+    }
+
+    /**
+     * Returns a snapshot of the enabled transitions. It does not take any mutex.
+     * @return Bit mask of the enabled transitions, a new copy on each call.
+     */
+    public long[] getEnabledTransitions() {
+        return petriNet.getEnabledTransitionsMask();
+    }
+
+    /**
+     * Returns a snapshot of the transitions with threads waiting to fire them. It does not take any mutex.
+     * @return Bit mask of the waiting transitions, a new copy on each call.
+     */
+    public long[] getWaitingTransitions() {
+        return BitMask.snapshot(waitingTransitions);
+    }
+
+    /**
+     * Returns a snapshot of the number of waiters of each transition, taking the mutex of each cluster in turn.
+     * @return Array with the number of waiters of each transition, the transition 1 at index 0.
+     */
+    @Override
+    public int[] getWaitersCount() {
+        int[] count = new int[waitQueue.length];
+
+        for (int c = 0; c < locks.length; c++) {
+            locks[c].lock();
+
+            try {
+                for (int t : clusterTransitionsList[c])
+                    count[t - 1] = waitQueue[t - 1].size();
+            } finally {
+                locks[c].unlock();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Getter for the number of conflict clusters, each one with its own mutex.
+     * @return Number of clusters.
+     */
+    public int getNumberOfClusters() {
+        return locks.length;
+    }
+
+    /**
+     * Changes the executor completing the asynchronous firings, the common pool by default. The tasks are handed to the
+     * executor while the mutexes of the clusters are held, so it must run them on threads of its own: a direct executor,
+     * or a pool that runs the rejected tasks on the calling thread, would fire transitions with those mutexes held and
+     * could deadlock the monitor.
+     * @param asyncExecutor Executor for the asynchronous firings.
+     * @throws IllegalArgumentException If the executor is a pool that runs the rejected tasks on the calling thread.
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        if (asyncExecutor instanceof ThreadPoolExecutor
+            && ((ThreadPoolExecutor) asyncExecutor).getRejectedExecutionHandler() instanceof ThreadPoolExecutor.CallerRunsPolicy)
+            throw new IllegalArgumentException("The executor of the asynchronous firings must not run tasks on the calling thread");
+
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Fires the transition passed as argument in two phases from now on: each firing starts it and runs the job passed
+     * as argument on the job executor, and the post-set is produced when the job is done. It must be set before the
+     * transition is fired.
+     * @param transition Transition, starting at 1.
+     * @param job Job of the transition, null to fire it at once again.
+     */
+    public void setJob(int transition, Runnable job) {
+        jobs[transition - 1] = job;
+    }
+
+    /**
+     * Changes the executor running the jobs of the firings in two phases, the common pool by default.
+     * @param jobExecutor Executor for the jobs.
+     */
+    public void setJobExecutor(Executor jobExecutor) {
+        this.jobExecutor = jobExecutor;
+    }
+
+    /**
+     * Waits until every firing started in two phases is completed.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void awaitJobs() throws InterruptedException {
+        jobsLock.lock();
+
         try {
-            mutex.lock();
-            
-            return invariantsTransitionsFiredCount;
+            while (runningJobs > 0)
+                noJobs.await();
         } finally {
-            mutex.unlock();
+            jobsLock.unlock();
         }
     }
 
+    /**
+     * Interrupts the monitor: the waiting threads return without firing and the pending asynchronous firings are completed with false.
+     */
+    @Override
+    public void interrupt() {
+        setInterrupted();
+    }
+
     /**
      * Changes the policy for deciding which transition to fire next.
      * @param policy Policy for deciding which transition to fire next.
      */
     public void changePolicy(Policy policy) {
+        policy.init(policyContext);
+
+        this.policy = policy;
+    }
+
+    /**
+     * Fires the transition passed as argument if it can be fired now, or queues the request as a waiter of the transition
+     * without blocking. The mutex of the cluster is taken only while checking. The future is completed outside the mutexes.
+     * @param transition Transition to be fired.
+     * @param future Future completed with true when the transition is fired, or with false if the monitor is interrupted.
+     */
+    private void fireAsync(int transition, CompletableFuture<Boolean> future) {
+        ReentrantLock mutex = locks[clusters[transition - 1]];
+        boolean othersLocked = false;
+        boolean fired = false;
+
+        mutex.lock();
+
         try {
-            mutex.lock(); 
+            while (!isInterrupted()) {
+                if (!petriNet.isEnabled(transition)) {
+                    enqueue(transition, new Waiter(future));
+
+                    return;
+                }
 
-            this.policy = policy;
+                Transition.TimedState timedState = petriNet.checkTimedStateTransition(transition);
+
+                if (timedState == Transition.TimedState.NO_TIMED || timedState == Transition.TimedState.IN_WINDOW) {
+                    othersLocked = true;
+
+                    if (lockOthers(transition) || isFireable(transition)) {
+                        fired = fire(transition);
+
+                        signalNext(transition, true);
+
+                        break;
+                    }
+
+                    unlockOthers(transition);
+                    othersLocked = false;
+
+                    continue;
+                }
+
+                if (timedState == Transition.TimedState.AFTER_WINDOW) {
+                    petriNet.resensitizeTransition(transition);
+                    scheduleTimeFrame(transition);
+
+                    continue;
+                }
+
+                scheduleTimeFrame(transition);
+                enqueue(transition, new Waiter(future));
+
+                return;
+            }
         } finally {
+            if (othersLocked)
+                unlockOthers(transition);
+
             mutex.unlock();
         }
+
+        future.complete(fired);
+    }
+
+    /**
+     * Fires a transition without blocking the thread. If the transition is not enabled, the request is queued and completed
+     * by the firing that makes it enabled, so no thread waits for it.
+     * @param transition Transition to be fired.
+     * @return Future completed with true when the transition is fired, or with false if the monitor is interrupted.
+     */
+    public CompletableFuture<Boolean> fireTransitionAsync(int transition) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        fireAsync(transition, future);
+
+        return future;
+    }
+
+    /**
+     * Fires a transition without blocking the thread, calling back when the request is completed.
+     * @param transition Transition to be fired.
+     * @param callback Callback receiving true when the transition is fired, or false if the monitor is interrupted.
+     *                 It runs on the executor of the asynchronous firings, or on the calling thread if the transition is fired at once.
+     */
+    public void fireTransitionAsync(int transition, Consumer<Boolean> callback) {
+        fireTransitionAsync(transition).thenAccept(callback);
     }
 
     /**
@@ -218,7 +972,51 @@ public class Monitor {
      * @param transition Transition to be fired.
      * @param endTransitions Flag to indicate if the transition is a final transition.
      */
+    @Override
     public boolean fireTransition(int transition, boolean endTransitions) {
+        return fireTransition(transition, endTransitions, 0, false);
+    }
+
+    /**
+     * Fires a transition only if it can be fired now, without waiting.
+     * @param transition Transition to be fired.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    @Override
+    public boolean tryFire(int transition) {
+        return fireTransition(transition, false, System.nanoTime(), true);
+    }
+
+    /**
+     * Fires a transition, waiting until it is enabled and in its time frame for the time passed as argument at most.
+     * @param transition Transition to be fired.
+     * @param timeout Maximum time to wait.
+     * @param unit Unit of the timeout.
+     * @return True  if the transition was fired
+     *         False if the time elapsed or the monitor was interrupted
+     */
+    @Override
+    public boolean tryFire(int transition, long timeout, TimeUnit unit) {
+        return fireTransition(transition, false, System.nanoTime() + unit.toNanos(timeout), true);
+    }
+
+    /**
+     * Fires a transition. If the transition is not enabled or it is before its time frame, the thread waits in the queue
+     * of the transition until it is signalled, the transition is fired on its behalf or the deadline is reached.
+     * @param transition Transition to be fired.
+     * @param endTransitions Flag to indicate if the transition is a final transition.
+     * @param deadline Instant to stop waiting, from System.nanoTime(), ignored if timed is false.
+     * @param timed True to wait until the deadline at most.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    private boolean fireTransition(int transition, boolean endTransitions, long deadline, boolean timed) {
+        int cluster = clusters[transition - 1];
+        ReentrantLock mutex = locks[cluster];
+        boolean locked = true;
+        boolean othersLocked = false;
+        boolean interruptedHere = false;
         boolean fired = false;
 
         try {
@@ -226,53 +1024,63 @@ public class Monitor {
             
             try {
                 while (!isInterrupted()) {               
-                    if (!petriNet.isEnabled(transition)) {
-                        waitQueue[transition - 1].await();
+                    if (petriNet.isEnabled(transition)) {
+                        Transition.TimedState timedState = petriNet.checkTimedStateTransition(transition);
 
-                        continue;
-                    }
+                        if (timedState == Transition.TimedState.NO_TIMED || timedState == Transition.TimedState.IN_WINDOW) {
+                            othersLocked = true;
 
-                    Transition.TimedState timedState = petriNet.checkTimedStateTransition(transition);
-                    
-                    if (timedState == Transition.TimedState.NO_TIMED || timedState == Transition.TimedState.IN_WINDOW)
-                        break;
-    
-                    if (timedState == Transition.TimedState.BEFORE_WINDOW) {
-                        if(!mutex.hasWaiters(coolDownQueue)) {
-                            long sleepTime = petriNet.getTransition(transition).getTimeStamp() + petriNet.getTransition(transition).getAlfaTime() - System.currentTimeMillis();
-                            
-                            coolDownQueue.await(sleepTime, TimeUnit.MILLISECONDS);
+                            if (lockOthers(transition) || isFireable(transition))
+                                break;
+
+                            unlockOthers(transition);
+                            othersLocked = false;
 
                             continue;
                         }
 
-                        waitQueue[transition - 1].await();
+                        if (timedState == Transition.TimedState.AFTER_WINDOW) {
+                            petriNet.resensitizeTransition(transition);
+                            scheduleTimeFrame(transition);
+
+                            continue;
+                        }
+
+                        scheduleTimeFrame(transition);
+                    }
+
+                    if (timed && deadline - System.nanoTime() <= 0)
+                        return false;
+
+                    WaiterState state = awaitTransition(transition, deadline, timed);
 
-                        continue;
+                    if (state == WaiterState.GRANTED) {
+                        locked = false;
+                        interruptedHere = Thread.interrupted();
+
+                        return true;
                     }
+
+                    if (state == WaiterState.WAITING)
+                        return false;
                 }
             } catch (InterruptedException e) {
-                setInterrupted();
+                interrupted = true;
+                interruptedHere = true;
             }
 
             if (isInterrupted() && !endTransitions)
                 return false;
 
-            fired = petriNet.fireTransition(transition);
-
-            if (fired)
-                UpdateFiredCounts(transition);
+            if (!othersLocked) {
+                lockOthers(transition);
+                othersLocked = true;
+            }
 
-            if (!endTransitions) {
-                int[] waitTransitions = getWaitTransitions();
+            fired = fire(transition);
 
-                int[] transitionsAbleToFire = getTransitionsAbleToFire(waitTransitions);
-                
-                int nextTransition = policy.decide(transitionsAbleToFire, transitionsFiredCount, invariantsTransitionsFiredCount);
-
-                if (nextTransition > 0)
-                    waitQueue[nextTransition - 1].signal();
-            }
+            if (!endTransitions)
+                signalNext(transition, true);
 
             return fired;
         } catch (IllegalMonitorStateException e) {
@@ -280,7 +1088,14 @@ public class Monitor {
             System.exit(1);
             return fired;
         } finally {
-            mutex.unlock();
+            if (othersLocked)
+                unlockOthers(transition);
+
+            if (locked)
+                mutex.unlock();
+
+            if (interruptedHere)
+                setInterrupted();
         }  
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+package com.picasso.Monitor;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MonitorInterface interface is implemented by the engines that synchronize the threads firing the transitions of a Petri net.
+ */
+public interface MonitorInterface {
+    /**
+     * Fires a transition. If the transition is not enabled, the thread sleeps until other thread fires a transition that enables the transition.
+     * @param transition Transition to be fired.
+     * @param endTransitions Flag to indicate if the transition is a final transition, final transitions are fired after the
+     *                       interruption only if they are enabled.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    public boolean fireTransition(int transition, boolean endTransitions);
+
+    /**
+     * Fires a transition only if it can be fired now: it is enabled and, if it is timed, in its time frame. It does not wait.
+     * @param transition Transition to be fired.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    public boolean tryFire(int transition);
+
+    /**
+     * Fires a transition, waiting until it can be fired for the time passed as argument at most.
+     * @param transition Transition to be fired.
+     * @param timeout Maximum time to wait.
+     * @param unit Unit of the timeout.
+     * @return True  if the transition was fired
+     *         False if the time elapsed or the monitor was interrupted
+     */
+    public boolean tryFire(int transition, long timeout, TimeUnit unit);
+
+    /**
+     * Checks if the transition passed as argument is enabled by the current marking, without its time frame. The result
+     * can be stale as soon as it is returned.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is enabled
+     *         False otherwise
+     */
+    public boolean isEnabled(int transition);
+
+    /**
+     * Checks if the transition passed as argument has a time frame.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is timed
+     *         False otherwise
+     */
+    public boolean isTimed(int transition);
+
+    /**
+     * Getter for the interrupted flag.
+     * @return True  if a thread was interrupted while firing
+     *         False otherwise
+     */
+    public boolean isInterrupted();
+
+    /**
+     * Interrupts the monitor, waking all the threads waiting for a transition.
+     */
+    public void interrupt();
+
+    /**
+     * Returns the number of firings of each transition.
+     * @return Map of transitions, starting at 1, and their fired count.
+     */
+    public Map<Integer, Integer> getTransitionsFiredCount();
+
+    /**
+     * Returns the number of completed cycles of each invariant.
+     * @return Map of invariants and their count.
+     */
+    public Map<int[], Integer> getInvariantsTransitionsFiredCount();
+
+    /**
+     * Returns a snapshot of the number of threads waiting for each transition.
+     * @return Array with the number of waiters of each transition, the transition 1 at index 0.
+     */
+    public int[] getWaitersCount();
+}
@@ -137,6 +137,31 @@ public class Arc extends PetriNetElement {
             this.weight = weight;
     }
 
+    /**
+     * Getter for the place connected to the arc
+     * @return Place connected to the arc
+     */
+    Place getPlace() {
+        return place;
+    }
+
+    /**
+     * Getter for the transition connected to the arc
+     * @return Transition connected to the arc
+     */
+    Transition getTransition() {
+        return transition;
+    }
+
+    /**
+     * Checks if the arc goes from the place to the transition
+     * @return True  if the arc is an input arc of the transition
+     *         False otherwise
+     */
+    boolean isInput() {
+        return direction == Direction.PLACE_TO_TRANSITION;
+    }
+
     /**
      * Getter for the weight of the arc
      * @return Weight of the arc
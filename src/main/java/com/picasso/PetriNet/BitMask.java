@@ -0,0 +1,181 @@
+package com.picasso.PetriNet;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * BitMask class contains helpers for sets of transitions encoded as arrays of 64 bits words.
+ * Bit i of the mask represents the transition i + 1.
+ */
+public final class BitMask {
+    // Number of bits of each word.
+    private static final int WORD_SIZE = Long.SIZE;
+    // Handle for the atomic access to the words of a mask.
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Private constructor, the class only has static helpers.
+     */
+    private BitMask() {
+    }
+
+    /**
+     * Creates an empty mask able to hold the number of elements passed as argument.
+     * @param size Number of elements of the mask.
+     * @return Array of words with all bits cleared.
+     */
+    public static long[] create(int size) {
+        return new long[(size + WORD_SIZE - 1) / WORD_SIZE];
+    }
+
+    /**
+     * Sets the bit passed as argument.
+     * @param mask Mask to modify.
+     * @param index Index of the bit, starting at 0.
+     */
+    public static void set(long[] mask, int index) {
+        mask[index / WORD_SIZE] |= 1L << index;
+    }
+
+    /**
+     * Clears the bit passed as argument.
+     * @param mask Mask to modify.
+     * @param index Index of the bit, starting at 0.
+     */
+    public static void clear(long[] mask, int index) {
+        mask[index / WORD_SIZE] &= ~(1L << index);
+    }
+
+    /**
+     * Sets the bit passed as argument atomically, so bits of the same word can be changed by threads holding different locks.
+     * @param mask Mask to modify.
+     * @param index Index of the bit, starting at 0.
+     */
+    public static void setAtomic(long[] mask, int index) {
+        WORDS.getAndBitwiseOr(mask, index / WORD_SIZE, 1L << index);
+    }
+
+    /**
+     * Clears the bit passed as argument atomically, so bits of the same word can be changed by threads holding different locks.
+     * @param mask Mask to modify.
+     * @param index Index of the bit, starting at 0.
+     */
+    public static void clearAtomic(long[] mask, int index) {
+        WORDS.getAndBitwiseAnd(mask, index / WORD_SIZE, ~(1L << index));
+    }
+
+    /**
+     * Returns a copy of a mask changed with the atomic helpers. Each word is read atomically.
+     * @param mask Mask to copy.
+     * @return New array with the words of the mask.
+     */
+    public static long[] snapshot(long[] mask) {
+        long[] copy = new long[mask.length];
+
+        for (int i = 0; i < mask.length; i++)
+            copy[i] = (long) WORDS.getVolatile(mask, i);
+
+        return copy;
+    }
+
+    /**
+     * Checks the bit passed as argument.
+     * @param mask Mask to check.
+     * @param index Index of the bit, starting at 0.
+     * @return True  if the bit is set
+     *         False otherwise
+     */
+    public static boolean get(long[] mask, int index) {
+        return (mask[index / WORD_SIZE] & (1L << index)) != 0;
+    }
+
+    /**
+     * Stores in the result mask the intersection of the two masks passed as argument.
+     * @param a First mask.
+     * @param b Second mask.
+     * @param result Mask where the intersection is stored, it can be one of the operands.
+     * @return True  if the intersection is not empty
+     *         False otherwise
+     */
+    public static boolean and(long[] a, long[] b, long[] result) {
+        long any = 0;
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = a[i] & b[i];
+            any |= result[i];
+        }
+
+        return any != 0;
+    }
+
+    /**
+     * Checks if two masks have any bit in common, without storing their intersection.
+     * @param a First mask.
+     * @param b Second mask.
+     * @return True  if the intersection is not empty
+     *         False otherwise
+     */
+    public static boolean intersects(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++)
+            if ((a[i] & b[i]) != 0)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Counts the bits set in the mask.
+     * @param mask Mask to count.
+     * @return Number of bits set.
+     */
+    public static int count(long[] mask) {
+        int count = 0;
+
+        for (long word : mask)
+            count += Long.bitCount(word);
+
+        return count;
+    }
+
+    /**
+     * Returns the transition of the bit set at the position passed as argument, counting the bits set from the lowest.
+     * @param mask Mask to search.
+     * @param n Position among the bits set, starting at 0.
+     * @return Transition of the bit, starting at 1, or -1 if the mask has not so many bits set.
+     */
+    public static int nth(long[] mask, int n) {
+        for (int i = 0; i < mask.length; i++) {
+            int bits = Long.bitCount(mask[i]);
+
+            if (n >= bits) {
+                n -= bits;
+                continue;
+            }
+
+            long word = mask[i];
+
+            for (; n > 0; n--)
+                word &= word - 1;
+
+            return i * WORD_SIZE + Long.numberOfTrailingZeros(word) + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the transitions of the mask.
+     * @param mask Mask to convert.
+     * @return Array with the transitions of the mask, starting at 1.
+     */
+    public static int[] toTransitions(long[] mask) {
+        int[] transitions = new int[count(mask)];
+        int n = 0;
+
+        for (int i = 0; i < mask.length; i++)
+            for (long word = mask[i]; word != 0; word &= word - 1)
+                transitions[n++] = i * WORD_SIZE + Long.numberOfTrailingZeros(word) + 1;
+
+        return transitions;
+    }
+}
@@ -0,0 +1,870 @@
+package com.picasso.PetriNet;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CompiledPetriNet class is a flat representation of a Petri Net built from its places, transitions and arcs.
+ * Markings, arc weights, capacities and time frames are stored in primitive arrays, so checking and firing
+ * a transition only touches the places of its pre and post sets and does not allocate.
+ * Transitions are numbered starting at 1, as in the rest of the Petri Net, and places starting at 0, as in the markings.
+ * Transitions sharing a place that enables them belong to the same conflict cluster, and each place is owned by the
+ * cluster of the transitions it enables. A transition can be fired concurrently with others as long as the caller
+ * holds a lock for every cluster of its lock set, the owners of the places it touches.
+ * A firing can also be split in two phases: the start consumes the pre-set and reserves room in the post-set, and the
+ * completion produces the post-set, so the transitions enabled by it wait until the work of the firing is done.
+ */
+public final class CompiledPetriNet {
+    // Capacity used for unlimited places.
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // Number of places.
+    private final int numberOfPlaces;
+    // Number of transitions.
+    private final int numberOfTransitions;
+
+    // Tokens of each place.
+    private final int[] tokens;
+    // Maximum number of tokens of each place.
+    private final int[] capacities;
+    // Tokens to be produced in each place by the firings started and not completed.
+    private final int[] reserved;
+    // Firings started and not completed of each transition.
+    private final int[] inFlight;
+
+    // Pre-set of each transition in CSR form: transition i consumes prePlaces[k] with preWeights[k], for k in [preIndex[i], preIndex[i + 1]).
+    private final int[] preIndex;
+    private final int[] prePlaces;
+    private final int[] preWeights;
+    // Post-set of each transition in CSR form: transition i produces postPlaces[k] with postWeights[k], for k in [postIndex[i], postIndex[i + 1]).
+    private final int[] postIndex;
+    private final int[] postPlaces;
+    private final int[] postWeights;
+    // Transitions whose enabling can be changed by the firing of transition i: dependents[k], for k in [dependentsIndex[i], dependentsIndex[i + 1]).
+    private int[] dependentsIndex;
+    private int[] dependents;
+
+    // Conflict cluster of each transition, starting at 0.
+    private int[] clusters;
+    // Clusters owning the places touched by each transition, sorted.
+    private int[][] lockSets;
+    // Cluster owning each place, -1 if no transition touches it.
+    private int[] placeOwners;
+    // Number of conflict clusters.
+    private int numberOfClusters;
+    // Version of the places of each cluster, odd while a firing is changing them.
+    private AtomicLongArray versions;
+
+    // Enabled transitions, one bit per transition, changed atomically.
+    private final long[] enabledTransitions;
+
+    // True for each timed transition.
+    private final boolean[] timed;
+    // Instant of each transition when it is sensibilized, in milliseconds relative to its time stamp.
+    private final long[] alfaTimes;
+    // Instant of each transition when it is desensibilized, in milliseconds relative to its time stamp.
+    private final long[] betaTimes;
+    // Last time each transition was sensibilized, from System.nanoTime(). Guarded by the lock of the cluster of the transition.
+    private final long[] timeStamps;
+    // Indexes of the timed transitions, starting at 0.
+    private int[] timedTransitions;
+    // True once a monitor synchronizes the net, its clusters and lock sets cannot change any more.
+    private volatile boolean attached;
+
+    /**
+     * Constructor for CompiledPetriNet class. Flattens the elements passed as argument.
+     * @param places Places of the Petri Net, in marking order.
+     * @param transitions Transitions of the Petri Net, in numbering order.
+     * @param arcs Arcs connecting the places and the transitions.
+     */
+    CompiledPetriNet(List<Place> places, List<Transition> transitions, List<Arc> arcs) {
+        numberOfPlaces = places.size();
+        numberOfTransitions = transitions.size();
+
+        tokens = new int[numberOfPlaces];
+        capacities = new int[numberOfPlaces];
+        reserved = new int[numberOfPlaces];
+        inFlight = new int[numberOfTransitions];
+
+        for (int i = 0; i < numberOfPlaces; i++) {
+            tokens[i] = places.get(i).getTokens();
+            capacities[i] = places.get(i).isUnlimited() ? UNLIMITED : places.get(i).getMaxTokens();
+        }
+
+        int[][] inputWeights = new int[numberOfTransitions][numberOfPlaces];
+        int[][] outputWeights = new int[numberOfTransitions][numberOfPlaces];
+
+        for (Arc arc : arcs) {
+            int t = transitions.indexOf(arc.getTransition());
+            int p = places.indexOf(arc.getPlace());
+
+            if (arc.isInput())
+                inputWeights[t][p] += arc.getWeight();
+            else
+                outputWeights[t][p] += arc.getWeight();
+        }
+
+        preIndex = new int[numberOfTransitions + 1];
+        postIndex = new int[numberOfTransitions + 1];
+
+        for (int t = 0; t < numberOfTransitions; t++) {
+            preIndex[t + 1] = preIndex[t] + countNonZero(inputWeights[t]);
+            postIndex[t + 1] = postIndex[t] + countNonZero(outputWeights[t]);
+        }
+
+        prePlaces = new int[preIndex[numberOfTransitions]];
+        preWeights = new int[preIndex[numberOfTransitions]];
+        postPlaces = new int[postIndex[numberOfTransitions]];
+        postWeights = new int[postIndex[numberOfTransitions]];
+
+        for (int t = 0; t < numberOfTransitions; t++) {
+            int pre = preIndex[t];
+            int post = postIndex[t];
+
+            for (int p = 0; p < numberOfPlaces; p++) {
+                if (inputWeights[t][p] > 0) {
+                    prePlaces[pre] = p;
+                    preWeights[pre++] = inputWeights[t][p];
+                }
+
+                if (outputWeights[t][p] > 0) {
+                    postPlaces[post] = p;
+                    postWeights[post++] = outputWeights[t][p];
+                }
+            }
+        }
+
+        timed = new boolean[numberOfTransitions];
+        alfaTimes = new long[numberOfTransitions];
+        betaTimes = new long[numberOfTransitions];
+        timeStamps = new long[numberOfTransitions];
+        timedTransitions = new int[0];
+
+        for (int t = 0; t < numberOfTransitions; t++)
+            if (transitions.get(t).isTimed())
+                setTimeFrame(t + 1, transitions.get(t).getAlfaTime(), transitions.get(t).getBetaTime());
+
+        generateDependents();
+
+        enabledTransitions = BitMask.create(numberOfTransitions);
+        attached = false;
+
+        updateEnabledTransitions();
+    }
+
+    /**
+     * Counts the non zero elements of the array passed as argument.
+     * @param weights Array to check.
+     * @return Number of non zero elements.
+     */
+    private static int countNonZero(int[] weights) {
+        int count = 0;
+
+        for (int w : weights)
+            if (w != 0)
+                count++;
+
+        return count;
+    }
+
+    /**
+     * Generate, for each transition, the transitions whose enabling can change when it fires, and the conflict clusters.
+     * A transition depends on the places of its pre-set and on the bounded places of its post-set.
+     */
+    private void generateDependents() {
+        boolean[][] reads = new boolean[numberOfTransitions][numberOfPlaces];
+
+        for (int t = 0; t < numberOfTransitions; t++) {
+            for (int k = preIndex[t]; k < preIndex[t + 1]; k++)
+                reads[t][prePlaces[k]] = true;
+
+            for (int k = postIndex[t]; k < postIndex[t + 1]; k++)
+                if (capacities[postPlaces[k]] != UNLIMITED)
+                    reads[t][postPlaces[k]] = true;
+        }
+
+        generateClusters(reads);
+
+        int[] buffer = new int[numberOfTransitions * numberOfTransitions];
+        int[] index = new int[numberOfTransitions + 1];
+        int n = 0;
+
+        for (int t = 0; t < numberOfTransitions; t++) {
+            for (int u = 0; u < numberOfTransitions; u++)
+                if (touchesAny(t, reads[u]))
+                    buffer[n++] = u;
+
+            index[t + 1] = n;
+        }
+
+        dependentsIndex = index;
+        dependents = Arrays.copyOf(buffer, n);
+    }
+
+    /**
+     * Generate the conflict clusters, joining the transitions whose enabling depends on a same place, and the lock set of each transition.
+     * Each place is owned by the cluster of the transitions depending on it or, if there are none, by the cluster of its first producer.
+     * @param reads Places each transition depends on, indexed by transition and place.
+     */
+    private void generateClusters(boolean[][] reads) {
+        int[] parent = new int[numberOfTransitions];
+
+        for (int t = 0; t < numberOfTransitions; t++)
+            parent[t] = t;
+
+        for (int p = 0; p < numberOfPlaces; p++) {
+            int first = -1;
+
+            for (int t = 0; t < numberOfTransitions; t++) {
+                if (!reads[t][p])
+                    continue;
+
+                if (first < 0)
+                    first = t;
+                else
+                    parent[find(parent, t)] = find(parent, first);
+            }
+        }
+
+        int[] roots = new int[numberOfTransitions];
+        Arrays.fill(roots, -1);
+
+        clusters = new int[numberOfTransitions];
+        numberOfClusters = 0;
+
+        for (int t = 0; t < numberOfTransitions; t++) {
+            int root = find(parent, t);
+
+            if (roots[root] < 0)
+                roots[root] = numberOfClusters++;
+
+            clusters[t] = roots[root];
+        }
+
+        int[] owners = new int[numberOfPlaces];
+        Arrays.fill(owners, -1);
+        placeOwners = owners;
+
+        for (int p = 0; p < numberOfPlaces; p++)
+            for (int t = 0; t < numberOfTransitions && owners[p] < 0; t++)
+                if (reads[t][p])
+                    owners[p] = clusters[t];
+
+        for (int t = 0; t < numberOfTransitions; t++)
+            for (int k = postIndex[t]; k < postIndex[t + 1]; k++)
+                if (owners[postPlaces[k]] < 0)
+                    owners[postPlaces[k]] = clusters[t];
+
+        lockSets = new int[numberOfTransitions][];
+
+        for (int t = 0; t < numberOfTransitions; t++) {
+            boolean[] locked = new boolean[numberOfClusters];
+            locked[clusters[t]] = true;
+
+            for (int k = preIndex[t]; k < preIndex[t + 1]; k++)
+                locked[owners[prePlaces[k]]] = true;
+
+            for (int k = postIndex[t]; k < postIndex[t + 1]; k++)
+                locked[owners[postPlaces[k]]] = true;
+
+            int[] set = new int[numberOfClusters];
+            int n = 0;
+
+            for (int c = 0; c < numberOfClusters; c++)
+                if (locked[c])
+                    set[n++] = c;
+
+            lockSets[t] = Arrays.copyOf(set, n);
+        }
+
+        versions = new AtomicLongArray(numberOfClusters);
+    }
+
+    /**
+     * Returns the root of the element passed as argument in a union-find forest, compressing the path.
+     * @param parent Parent of each element.
+     * @param element Element to find.
+     * @return Root of the element.
+     */
+    private static int find(int[] parent, int element) {
+        while (parent[element] != element) {
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+
+        return element;
+    }
+
+    /**
+     * Checks if the firing of the transition changes any of the places passed as argument.
+     * @param transition Index of the transition, starting at 0.
+     * @param places Places to check, indexed by place.
+     * @return True if the transition consumes or produces tokens in any of the places.
+     *         False otherwise.
+     */
+    private boolean touchesAny(int transition, boolean[] places) {
+        for (int k = preIndex[transition]; k < preIndex[transition + 1]; k++)
+            if (places[prePlaces[k]])
+                return true;
+
+        for (int k = postIndex[transition]; k < postIndex[transition + 1]; k++)
+            if (places[postPlaces[k]])
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Checks if the transition is enabled by the current tokens.
+     * @param transition Index of the transition, starting at 0.
+     * @return True if the pre-set has enough tokens and the post-set has enough room, counting the tokens reserved.
+     *         False otherwise.
+     */
+    private boolean isEnabledByTokens(int transition) {
+        for (int k = preIndex[transition]; k < preIndex[transition + 1]; k++)
+            if (tokens[prePlaces[k]] < preWeights[k])
+                return false;
+
+        for (int k = postIndex[transition]; k < postIndex[transition + 1]; k++)
+            if (tokens[postPlaces[k]] + reserved[postPlaces[k]] > capacities[postPlaces[k]] - postWeights[k])
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Sets the enabling bit of the transition passed as argument.
+     * @param transition Index of the transition, starting at 0.
+     * @param enabled New enabling of the transition.
+     * @return True if the enabling of the transition changed.
+     *         False otherwise.
+     */
+    private boolean setEnabled(int transition, boolean enabled) {
+        if (BitMask.get(enabledTransitions, transition) == enabled)
+            return false;
+
+        if (enabled)
+            BitMask.setAtomic(enabledTransitions, transition);
+        else
+            BitMask.clearAtomic(enabledTransitions, transition);
+
+        return true;
+    }
+
+    /**
+     * Updates the enabling of every transition.
+     */
+    private void updateEnabledTransitions() {
+        long now = System.nanoTime();
+
+        for (int t = 0; t < numberOfTransitions; t++)
+            if (setEnabled(t, isEnabledByTokens(t)) && timed[t])
+                timeStamps[t] = now;
+    }
+
+    /**
+     * Updates the enabling of the transitions affected by the transition fired, leaving the rest untouched.
+     * The timed transitions that become enabled are sensibilized at the time of the firing.
+     * @param transition Index of the transition fired, starting at 0.
+     * @param now Time of the firing.
+     */
+    private void updateEnabledTransitions(int transition, long now) {
+        for (int k = dependentsIndex[transition]; k < dependentsIndex[transition + 1]; k++) {
+            int t = dependents[k];
+
+            if (setEnabled(t, isEnabledByTokens(t)) && timed[t])
+                timeStamps[t] = now;
+        }
+    }
+
+    /**
+     * Fires the transition passed as argument if it is enabled.
+     * @param transition Transition to fire, starting at 1.
+     * @return True  if the transition was fired
+     *         False otherwise
+     */
+    public boolean tryFire(int transition) {
+        int t = transition - 1;
+
+        if (!BitMask.get(enabledTransitions, t))
+            return false;
+
+        long now = System.nanoTime();
+
+        for (int c : lockSets[t])
+            versions.incrementAndGet(c);
+
+        for (int k = preIndex[t]; k < preIndex[t + 1]; k++)
+            tokens[prePlaces[k]] -= preWeights[k];
+
+        for (int k = postIndex[t]; k < postIndex[t + 1]; k++)
+            tokens[postPlaces[k]] += postWeights[k];
+
+        updateEnabledTransitions(t, now);
+
+        for (int c : lockSets[t])
+            versions.incrementAndGet(c);
+
+        return true;
+    }
+
+    /**
+     * Starts the firing of the transition passed as argument if it is enabled: the pre-set is consumed and the room of
+     * the post-set is reserved until the firing is completed.
+     * @param transition Transition to start, starting at 1.
+     * @return True  if the firing was started
+     *         False otherwise
+     */
+    public boolean tryStart(int transition) {
+        int t = transition - 1;
+
+        if (!BitMask.get(enabledTransitions, t))
+            return false;
+
+        long now = System.nanoTime();
+
+        for (int c : lockSets[t])
+            versions.incrementAndGet(c);
+
+        for (int k = preIndex[t]; k < preIndex[t + 1]; k++)
+            tokens[prePlaces[k]] -= preWeights[k];
+
+        for (int k = postIndex[t]; k < postIndex[t + 1]; k++)
+            reserved[postPlaces[k]] += postWeights[k];
+
+        inFlight[t]++;
+
+        updateEnabledTransitions(t, now);
+
+        for (int c : lockSets[t])
+            versions.incrementAndGet(c);
+
+        return true;
+    }
+
+    /**
+     * Completes a firing of the transition passed as argument started before, producing its post-set.
+     * @param transition Transition to complete, starting at 1.
+     * @throws IllegalStateException If no firing of the transition was started.
+     */
+    public void complete(int transition) {
+        int t = transition - 1;
+
+        if (inFlight[t] == 0)
+            throw new IllegalStateException("No firing of T" + transition + " was started");
+
+        long now = System.nanoTime();
+
+        for (int c : lockSets[t])
+            versions.incrementAndGet(c);
+
+        for (int k = postIndex[t]; k < postIndex[t + 1]; k++) {
+            reserved[postPlaces[k]] -= postWeights[k];
+            tokens[postPlaces[k]] += postWeights[k];
+        }
+
+        inFlight[t]--;
+
+        updateEnabledTransitions(t, now);
+
+        for (int c : lockSets[t])
+            versions.incrementAndGet(c);
+    }
+
+    /**
+     * Getter for the firings of the transition passed as argument started and not completed.
+     * @param transition Transition, starting at 1.
+     * @return Number of firings in progress.
+     */
+    public int getInFlight(int transition) {
+        return inFlight[transition - 1];
+    }
+
+    /**
+     * Checks if the transition passed as argument is enabled by the marking passed as argument.
+     * It does not use nor change the state of the compiled net.
+     * @param marking Marking to check.
+     * @param transition Transition to check, starting at 1.
+     * @return True  if the transition is enabled by the marking
+     *         False otherwise
+     */
+    public boolean isEnabled(int[] marking, int transition) {
+        int t = transition - 1;
+
+        for (int k = preIndex[t]; k < preIndex[t + 1]; k++)
+            if (marking[prePlaces[k]] < preWeights[k])
+                return false;
+
+        for (int k = postIndex[t]; k < postIndex[t + 1]; k++)
+            if (marking[postPlaces[k]] > capacities[postPlaces[k]] - postWeights[k])
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Stores in the result the marking reached by firing the transition passed as argument from the marking passed as argument.
+     * It does not check the enabling of the transition nor change the state of the compiled net.
+     * @param marking Marking to fire from.
+     * @param transition Transition to fire, starting at 1.
+     * @param result Marking reached, it can be the same array as the marking.
+     */
+    public void fire(int[] marking, int transition, int[] result) {
+        int t = transition - 1;
+
+        if (result != marking)
+            System.arraycopy(marking, 0, result, 0, numberOfPlaces);
+
+        for (int k = preIndex[t]; k < preIndex[t + 1]; k++)
+            result[prePlaces[k]] -= preWeights[k];
+
+        for (int k = postIndex[t]; k < postIndex[t + 1]; k++)
+            result[postPlaces[k]] += postWeights[k];
+    }
+
+    /**
+     * Checks if the transition passed as argument is enabled.
+     * @param transition Transition to check, starting at 1.
+     * @return True  if the transition is enabled
+     *         False otherwise
+     */
+    public boolean isEnabled(int transition) {
+        return BitMask.get(enabledTransitions, transition - 1);
+    }
+
+    /**
+     * Getter for a snapshot of the enabled transitions. It can be read without holding the monitor.
+     * @return Bit mask of the enabled transitions, a new copy on each call.
+     */
+    public long[] getEnabledTransitionsMask() {
+        return BitMask.snapshot(enabledTransitions);
+    }
+
+    /**
+     * Checks if any of the transitions of the mask passed as argument is enabled, storing the enabled ones in the result.
+     * The bits of the transitions whose cluster is not locked by the caller can be stale.
+     * @param mask Transitions to check, one bit per transition.
+     * @param result Mask where the enabled transitions of the mask are stored, it can be the same array as the mask.
+     * @return True  if any transition of the mask is enabled
+     *         False otherwise
+     */
+    public boolean andEnabled(long[] mask, long[] result) {
+        return BitMask.and(enabledTransitions, mask, result);
+    }
+
+    /**
+     * Sets the time frame of the transition passed as argument, making it timed.
+     * @param transition Transition to set, starting at 1.
+     * @param alfa Instant when the transition is sensibilized.
+     * @param beta Instant when the transition is desensibilized.
+     */
+    void setTimeFrame(int transition, long alfa, long beta) {
+        int t = transition - 1;
+
+        alfaTimes[t] = alfa;
+        betaTimes[t] = beta;
+        timeStamps[t] = System.nanoTime();
+
+        if (!timed[t]) {
+            timed[t] = true;
+            timedTransitions = Arrays.copyOf(timedTransitions, timedTransitions.length + 1);
+            timedTransitions[timedTransitions.length - 1] = t;
+        }
+    }
+
+    /**
+     * Marks the net as synchronized by a monitor. The monitor copies the clusters and lock sets of the transitions, so
+     * the capacities, which define them, cannot be changed afterwards.
+     */
+    public void attach() {
+        attached = true;
+    }
+
+    /**
+     * Sets the maximum number of tokens of the place passed as argument.
+     * @param place Index of the place, starting at 0.
+     * @param maxTokens Maximum number of tokens, a negative value means unlimited.
+     * @throws IllegalStateException If a monitor already synchronizes the net.
+     */
+    void setCapacity(int place, int maxTokens) {
+        if (attached)
+            throw new IllegalStateException("The capacities cannot change once a monitor synchronizes the net");
+
+        capacities[place] = maxTokens < 0 ? UNLIMITED : maxTokens;
+
+        generateDependents();
+
+        updateEnabledTransitions();
+    }
+
+    /**
+     * Returns the places of the pre-set of the transition passed as argument.
+     * @param transition Transition, starting at 1.
+     * @return Array with the index of each input place, starting at 0.
+     */
+    public int[] getPreSet(int transition) {
+        return Arrays.copyOfRange(prePlaces, preIndex[transition - 1], preIndex[transition]);
+    }
+
+    /**
+     * Returns the weights of the pre-set of the transition passed as argument, in the same order as the places of the pre-set.
+     * @param transition Transition, starting at 1.
+     * @return Array with the weight of each input arc.
+     */
+    public int[] getPreWeights(int transition) {
+        return Arrays.copyOfRange(preWeights, preIndex[transition - 1], preIndex[transition]);
+    }
+
+    /**
+     * Returns the places of the post-set of the transition passed as argument.
+     * @param transition Transition, starting at 1.
+     * @return Array with the index of each output place, starting at 0.
+     */
+    public int[] getPostSet(int transition) {
+        return Arrays.copyOfRange(postPlaces, postIndex[transition - 1], postIndex[transition]);
+    }
+
+    /**
+     * Returns the weights of the post-set of the transition passed as argument, in the same order as the places of the post-set.
+     * @param transition Transition, starting at 1.
+     * @return Array with the weight of each output arc.
+     */
+    public int[] getPostWeights(int transition) {
+        return Arrays.copyOfRange(postWeights, postIndex[transition - 1], postIndex[transition]);
+    }
+
+    /**
+     * Checks if the place passed as argument has a maximum number of tokens.
+     * @param place Index of the place, starting at 0.
+     * @return True  if the place is bounded
+     *         False otherwise
+     */
+    public boolean isBounded(int place) {
+        return capacities[place] != UNLIMITED;
+    }
+
+    /**
+     * Checks if the transition passed as argument is timed.
+     * @param transition Transition to check, starting at 1.
+     * @return True  if the transition is timed
+     *         False otherwise
+     */
+    public boolean isTimed(int transition) {
+        return timed[transition - 1];
+    }
+
+    /**
+     * Getter for the instant when the transition is sensibilized.
+     * @param transition Transition, starting at 1.
+     * @return Alfa time of the transition, 0 if it is not timed.
+     */
+    public long getAlfaTime(int transition) {
+        return alfaTimes[transition - 1];
+    }
+
+    /**
+     * Getter for the instant when the transition is desensibilized.
+     * @param transition Transition, starting at 1.
+     * @return Beta time of the transition, 0 if it is not timed.
+     */
+    public long getBetaTime(int transition) {
+        return betaTimes[transition - 1];
+    }
+
+    /**
+     * Getter for the last time the transition was sensibilized: when it became enabled or was sensibilized again after
+     * missing its time frame. It only changes with the lock of the cluster of the transition held.
+     * @param transition Transition, starting at 1.
+     * @return Time stamp of the transition, from System.nanoTime().
+     */
+    public long getTimeStamp(int transition) {
+        return timeStamps[transition - 1];
+    }
+
+    /**
+     * Returns the instant when the time frame of the transition opens.
+     * @param transition Transition, starting at 1.
+     * @return Time stamp of the transition plus its alfa time, from System.nanoTime().
+     */
+    public long getWindowOpening(int transition) {
+        return getTimeStamp(transition) + TimeUnit.MILLISECONDS.toNanos(alfaTimes[transition - 1]);
+    }
+
+    /**
+     * Returns the instant when the time frame of the transition closes.
+     * @param transition Transition, starting at 1.
+     * @return Time stamp of the transition plus its beta time, from System.nanoTime().
+     */
+    public long getWindowClosing(int transition) {
+        return getTimeStamp(transition) + TimeUnit.MILLISECONDS.toNanos(betaTimes[transition - 1]);
+    }
+
+    /**
+     * Checks if the instant passed as argument is in the time frame of the transition. It does not check the enabling.
+     * @param transition Transition, starting at 1.
+     * @param now Instant to check, from System.nanoTime().
+     * @return True  if the transition is not timed or the instant is in its time frame
+     *         False otherwise
+     */
+    public boolean isInWindow(int transition, long now) {
+        return !timed[transition - 1] || (now - getWindowOpening(transition) >= 0 && now - getWindowClosing(transition) <= 0);
+    }
+
+    /**
+     * Sensibilizes the transition passed as argument again, starting a new time frame. It is used when an enabled
+     * transition misses its time frame. The lock of the cluster of the transition must be held.
+     * @param transition Transition, starting at 1.
+     * @param now New time stamp of the transition, from System.nanoTime().
+     */
+    public void resensitize(int transition, long now) {
+        if (timed[transition - 1])
+            timeStamps[transition - 1] = now;
+    }
+
+    /**
+     * Getter for the tokens of the place passed as argument.
+     * @param place Index of the place, starting at 0.
+     * @return Number of tokens in the place.
+     */
+    public int getTokens(int place) {
+        return tokens[place];
+    }
+
+    /**
+     * Getter for the tokens of every place.
+     * @return Array with the current markings, it must not be modified.
+     */
+    public int[] getMarking() {
+        return tokens;
+    }
+
+    /**
+     * Copies a consistent marking while other threads may be firing transitions of other clusters.
+     * The copy is retried until no cluster changed while it was taken, so the marking is one reached between two firings.
+     * @param marking Array where the marking is copied.
+     */
+    public void getMarking(int[] marking) {
+        getMarking(marking, null);
+    }
+
+    /**
+     * Copies a consistent marking, and the firings in progress of each transition at that marking, while other threads
+     * may be firing transitions of other clusters.
+     * @param marking Array where the marking is copied.
+     * @param inFlight Array where the firings in progress are copied, indexed from 0, or null to copy only the marking.
+     */
+    public void getMarking(int[] marking, int[] inFlight) {
+        while (!tryGetMarking(marking, inFlight))
+            Thread.onSpinWait();
+    }
+
+    /**
+     * Tries once to copy a consistent marking while other threads may be firing transitions of other clusters.
+     * The copy fails if a cluster was changing while it was taken, the marking copied must not be used then.
+     * @param marking Array where the marking is copied.
+     * @return True  if the marking copied is one reached between two firings
+     *         False otherwise
+     */
+    public boolean tryGetMarking(int[] marking) {
+        return tryGetMarking(marking, null);
+    }
+
+    /**
+     * Tries once to copy a consistent marking, and the firings in progress of each transition at that marking.
+     * @param marking Array where the marking is copied.
+     * @param inFlight Array where the firings in progress are copied, indexed from 0, or null to copy only the marking.
+     * @return True  if the copy is consistent
+     *         False otherwise
+     */
+    private boolean tryGetMarking(int[] marking, int[] inFlight) {
+        long before = 0;
+
+        for (int c = 0; c < numberOfClusters; c++) {
+            long version = versions.get(c);
+
+            if ((version & 1) != 0)
+                return false;
+
+            before += version;
+        }
+
+        System.arraycopy(tokens, 0, marking, 0, numberOfPlaces);
+
+        if (inFlight != null)
+            System.arraycopy(this.inFlight, 0, inFlight, 0, numberOfTransitions);
+
+        VarHandle.acquireFence();
+
+        long after = 0;
+
+        for (int c = 0; c < numberOfClusters; c++)
+            after += versions.get(c);
+
+        return after == before;
+    }
+
+    /**
+     * Getter for the conflict cluster of the transition passed as argument.
+     * @param transition Transition, starting at 1.
+     * @return Index of the cluster, starting at 0.
+     */
+    public int getConflictCluster(int transition) {
+        return clusters[transition - 1];
+    }
+
+    /**
+     * Returns the clusters that must be locked to fire the transition passed as argument.
+     * @param transition Transition, starting at 1.
+     * @return Sorted array with the index of each cluster, starting at 0. It always contains the cluster of the transition.
+     */
+    public int[] getLockSet(int transition) {
+        return lockSets[transition - 1].clone();
+    }
+
+    /**
+     * Getter for the conflict cluster owning the place passed as argument.
+     * @param place Index of the place, starting at 0.
+     * @return Index of the cluster, starting at 0, or -1 if no transition touches the place.
+     */
+    public int getPlaceOwner(int place) {
+        return placeOwners[place];
+    }
+
+    /**
+     * Returns the transitions whose enabling can change when the transition passed as argument fires.
+     * @param transition Transition, starting at 1.
+     * @return Array with the dependent transitions, starting at 1.
+     */
+    public int[] getDependents(int transition) {
+        return Arrays.stream(dependents, dependentsIndex[transition - 1], dependentsIndex[transition])
+                     .map(t -> t + 1)
+                     .toArray();
+    }
+
+    /**
+     * Getter for the number of conflict clusters.
+     * @return Number of clusters.
+     */
+    public int getNumberOfClusters() {
+        return numberOfClusters;
+    }
+
+    /**
+     * Getter for the number of places.
+     * @return Number of places.
+     */
+    public int getNumberOfPlaces() {
+        return numberOfPlaces;
+    }
+
+    /**
+     * Getter for the number of transitions.
+     * @return Number of transitions.
+     */
+    public int getNumberOfTransitions() {
+        return numberOfTransitions;
+    }
+}
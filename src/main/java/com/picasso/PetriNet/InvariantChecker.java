@@ -0,0 +1,173 @@
+package com.picasso.PetriNet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.picasso.Data.Logger;
+
+/**
+ * InvariantChecker class checks at runtime that the marking of a Petri Net keeps its P-invariants.
+ * The weighted delta of each invariant for each transition is computed once, so every firing only adds one delta per
+ * invariant to the expected sums. Every samplingRate firings the expected sums are compared against the sums of the
+ * current marking, and a mismatch is reported with the firing that revealed it.
+ * A firing in two phases is accounted when it starts. Until it completes, the tokens its post-set is owed are added to
+ * the sums of the marking, so a firing in progress is not taken as a violation.
+ * The delta of a P-invariant is zero for every transition, so its expected sum does not change, and the marking compared
+ * can be taken from the net some firings after the ones accounted.
+ */
+public final class InvariantChecker {
+    // Places of the support of each invariant, starting at 0.
+    private final int[][] supports;
+    // Weight of each place of the support of each invariant.
+    private final int[][] weights;
+    // Delta of each invariant when each transition fires, indexed by transition and invariant.
+    private final long[][] deltas;
+    // Weighted tokens of the post-set of each transition, owed by each firing in progress, indexed by transition and invariant.
+    private final long[][] pending;
+    // Expected weighted sum of each invariant.
+    private final long[] expectedSums;
+    // Number of firings between two comparisons.
+    private final int samplingRate;
+    // Number of firings checked.
+    private long firings;
+    // Number of violations found.
+    private long violations;
+
+    /**
+     * Constructor for InvariantChecker class.
+     * @param invariants P-invariants to check, each one with a weight per place.
+     * @param incidenceMatrix Incidence matrix of the Petri Net.
+     * @param marking Current marking, used as reference for the expected sums.
+     * @param samplingRate Number of firings between two comparisons, 1 compares after every firing.
+     */
+    public InvariantChecker(List<int[]> invariants, int[][] incidenceMatrix, int[] marking, int samplingRate) {
+        int numberOfTransitions = incidenceMatrix.length == 0 ? 0 : incidenceMatrix[0].length;
+
+        this.supports = new int[invariants.size()][];
+        this.weights = new int[invariants.size()][];
+        this.deltas = new long[numberOfTransitions][invariants.size()];
+        this.pending = new long[numberOfTransitions][invariants.size()];
+        this.expectedSums = new long[invariants.size()];
+        this.samplingRate = Math.max(samplingRate, 1);
+
+        for (int i = 0; i < invariants.size(); i++) {
+            int[] invariant = invariants.get(i);
+
+            supports[i] = IntStream.range(0, invariant.length).filter(p -> invariant[p] != 0).toArray();
+            weights[i] = Arrays.stream(supports[i]).map(p -> invariant[p]).toArray();
+            expectedSums[i] = sum(i, marking);
+
+            for (int t = 0; t < numberOfTransitions; t++) {
+                for (int p : supports[i]) {
+                    deltas[t][i] += (long) invariant[p] * incidenceMatrix[p][t];
+                    pending[t][i] += (long) invariant[p] * Math.max(incidenceMatrix[p][t], 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the weighted sum of the invariant over the marking passed as argument.
+     * @param invariant Index of the invariant.
+     * @param marking Marking to sum.
+     * @return Weighted sum of the invariant.
+     */
+    private long sum(int invariant, int[] marking) {
+        long sum = 0;
+
+        for (int k = 0; k < supports[invariant].length; k++)
+            sum += (long) weights[invariant][k] * marking[supports[invariant][k]];
+
+        return sum;
+    }
+
+    /**
+     * Accounts the firing of the transition passed as argument and, if it is a sampled firing, checks the marking.
+     * @param transition Transition fired, starting at 1.
+     * @param marking Marking after the firing.
+     * @return True  if no violation was found
+     *         False otherwise
+     */
+    public boolean check(int transition, int[] marking) {
+        return check(transition, marking, null, false);
+    }
+
+    /**
+     * Accounts a phase of the firing of the transition passed as argument and, if it is a sampled firing, checks the
+     * marking plus the tokens owed to the firings in progress.
+     * @param transition Transition fired, starting at 1.
+     * @param marking Marking after the phase.
+     * @param inFlight Firings in progress of each transition at the marking, indexed from 0, or null if there are none.
+     * @param completion True if the phase completes a firing already accounted when it started.
+     * @return True  if no violation was found
+     *         False otherwise
+     */
+    public boolean check(int transition, int[] marking, int[] inFlight, boolean completion) {
+        return !account(transition, completion) || verify(transition, marking, inFlight);
+    }
+
+    /**
+     * Accounts a phase of the firing of the transition passed as argument in the expected sums.
+     * @param transition Transition fired, starting at 1.
+     * @param completion True if the phase completes a firing already accounted when it started.
+     * @return True  if it is a sampled firing and the marking has to be verified
+     *         False otherwise
+     */
+    public boolean account(int transition, boolean completion) {
+        long[] delta = deltas[transition - 1];
+
+        if (!completion)
+            for (int i = 0; i < expectedSums.length; i++)
+                expectedSums[i] += delta[i];
+
+        return ++firings % samplingRate == 0;
+    }
+
+    /**
+     * Compares the sums of the marking plus the tokens owed to the firings in progress against the expected sums.
+     * @param transition Last transition accounted, starting at 1, reported with a violation.
+     * @param marking Marking to verify.
+     * @param inFlight Firings in progress of each transition at the marking, indexed from 0, or null if there are none.
+     * @return True  if no violation was found
+     *         False otherwise
+     */
+    public boolean verify(int transition, int[] marking, int[] inFlight) {
+        boolean valid = true;
+
+        for (int i = 0; i < expectedSums.length; i++) {
+            long actual = sum(i, marking);
+
+            if (inFlight != null)
+                for (int t = 0; t < inFlight.length; t++)
+                    actual += inFlight[t] * pending[t][i];
+
+            if (actual != expectedSums[i]) {
+                Logger.logSystem(String.format("P-INVARIANT VIOLATION -> invariant %d expected %d but was %d after firing T%d (firing #%d) on %s",
+                                               i, expectedSums[i], actual, transition, firings, Thread.currentThread().getName()));
+
+                expectedSums[i] = actual;
+                violations++;
+                valid = false;
+            }
+        }
+
+        return valid;
+    }
+
+    /**
+     * Getter for the number of violations found.
+     * @return Number of violations.
+     */
+    public long getViolations() {
+        return violations;
+    }
+
+    /**
+     * Getter for the number of firings checked.
+     * @return Number of firings.
+     */
+    public long getFirings() {
+        return firings;
+    }
+}
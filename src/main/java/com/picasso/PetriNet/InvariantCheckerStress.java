@@ -0,0 +1,72 @@
+package com.picasso.PetriNet;
+
+import java.util.List;
+import java.util.Random;
+
+import com.picasso.Config;
+import com.picasso.Analysis.InvariantAnalyzer;
+import com.picasso.Data.Logger;
+
+/**
+ * InvariantCheckerStress class checks that the runtime check of the P-invariants detects a corrupted marking.
+ * The Petri net of Config is fired at random, without time frames, while the observer checks every firing. After a first
+ * round of firings, which must not report violations, tokens are added to a place of the live marking of the compiled
+ * net behind the back of the firings, and a second round of firings must report at least one violation.
+ * Usage: InvariantCheckerStress [firings per round] [place, starting at 1] [tokens added]. The exit status is 1 if a check fails.
+ */
+public class InvariantCheckerStress {
+    /**
+     * Main method of the stress test.
+     * @param args Number of firings per round, 100000 by default, place corrupted, 7 by default, and tokens added, 5 by default.
+     */
+    public static void main(String[] args) {
+        long firings = args.length > 0 ? Long.parseLong(args[0]) : 100_000L;
+        int place = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        int tokens = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        PetriNet petriNet = new PetriNet("PetriNet", Config.INITIAL_MARKING, Config.INCIDENCE_MATRIX, Config.NUMBER_OF_PLACES, Config.NUMBER_OF_TRANSITIONS);
+        List<int[]> invariants = new InvariantAnalyzer(Config.INCIDENCE_MATRIX).computePInvariants();
+        Random random = new Random(1);
+
+        petriNet.setStatesMode(MarkingStore.Mode.OFF, false);
+        petriNet.setInvariantChecking(invariants, 1);
+
+        boolean covered = invariants.stream().anyMatch(i -> i[place - 1] != 0);
+
+        fire(petriNet, firings, random);
+
+        long before = petriNet.getInvariantViolations();
+
+        petriNet.getCompiledNet().getMarking()[place - 1] += tokens;
+
+        fire(petriNet, firings, random);
+
+        long after = petriNet.getInvariantViolations() - before;
+        boolean valid = before == 0 && (after > 0 || !covered);
+
+        System.out.printf("VIOLATIONS -> %d before corrupting P%d, %d after adding %d tokens%s%n", before, place, after, tokens,
+                          covered ? "" : " (the place is not covered by any P-invariant)");
+        System.out.println(valid ? "STRESS -> OK" : "STRESS -> FAILED");
+
+        Logger.shutdown();
+        System.exit(valid ? 0 : 1);
+    }
+
+    /**
+     * Fires enabled transitions of the Petri net chosen at random.
+     * @param petriNet Petri net to fire.
+     * @param firings Number of firings.
+     * @param random Random object to choose the transitions.
+     */
+    private static void fire(PetriNet petriNet, long firings, Random random) {
+        for (long i = 0; i < firings; i++) {
+            long[] enabled = petriNet.getEnabledTransitionsMask();
+            int count = BitMask.count(enabled);
+
+            if (count == 0)
+                break;
+
+            petriNet.fireTransition(BitMask.nth(enabled, random.nextInt(count)));
+        }
+    }
+}
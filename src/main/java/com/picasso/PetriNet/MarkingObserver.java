@@ -0,0 +1,268 @@
+package com.picasso.PetriNet;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MarkingObserver class records the markings reached by a Petri Net and checks its P-invariants off the firing path.
+ * Each firing, or phase of a firing in two phases, claims a sequence number and writes its transition in a bounded
+ * ring, without taking any lock. Firings of transitions sharing places are ordered by the mutexes of their clusters, so
+ * the sequence is an interleaving of the firings. An observer thread replays the ring in order on its own copy of the
+ * marking, recording each marking reached, so firings of independent clusters neither share a lock nor wait for a
+ * consistent copy of the whole marking. A firing only waits if the ring is full.
+ * The replayed marking keeps the invariants by construction, so it is not the one checked: at each sampled firing the
+ * observer copies a consistent marking from the net itself, retrying while clusters are firing, checks it against the
+ * expected sums of the invariants and records it with the replayed ones, so a marking corrupted by a concurrent firing
+ * is reported and shows in the states.
+ */
+final class MarkingObserver {
+    // Phase of an event that fires a transition at once
+    static final int FIRE = 0;
+    // Phase of an event that starts a firing in two phases
+    static final int START = 1;
+    // Phase of an event that completes a firing in two phases
+    static final int COMPLETE = 2;
+
+    // Number of events of the ring, a power of two
+    private static final int CAPACITY = 1 << 16;
+    // Time, in nanoseconds, the observer thread sleeps when the ring is empty, and a firing waits when it is full
+    private static final long IDLE_TIME = 100_000;
+
+    // Compiled net whose firings are observed
+    private final CompiledPetriNet net;
+    // Places of the pre-set of each transition, starting at 0
+    private final int[][] preSets;
+    // Weights of the pre-set of each transition
+    private final int[][] preWeights;
+    // Places of the post-set of each transition, starting at 0
+    private final int[][] postSets;
+    // Weights of the post-set of each transition
+    private final int[][] postWeights;
+    // Event of each slot of the ring, the transition and the phase
+    private final int[] events;
+    // Sequence number plus one of the event published in each slot of the ring
+    private final AtomicLongArray published;
+    // Next sequence number to claim
+    private final AtomicLong claimed;
+    // Lock of the replayed marking, the states and the checker
+    private final ReentrantLock lock;
+    // Marking reached by the events replayed
+    private final int[] marking;
+    // Scratch marking copied from the net at each sampled firing
+    private final int[] observed;
+    // Scratch firings in progress of each transition at the marking copied from the net
+    private final int[] observedInFlight;
+
+    // Next sequence number to replay, only written with the lock held
+    private volatile long replayed;
+    // True while the firings are observed
+    private volatile boolean active;
+    // Distinct markings reached
+    private MarkingStore states;
+    // Checker of the P-invariants, null if the markings are not checked
+    private InvariantChecker checker;
+    // Thread replaying the events, null if it was not started
+    private Thread thread;
+
+    /**
+     * Constructor for MarkingObserver class. The firings are not observed until the states or the checker are set.
+     * @param net Compiled net whose firings are observed.
+     */
+    MarkingObserver(CompiledPetriNet net) {
+        int numberOfTransitions = net.getNumberOfTransitions();
+
+        this.net = net;
+        this.preSets = new int[numberOfTransitions][];
+        this.preWeights = new int[numberOfTransitions][];
+        this.postSets = new int[numberOfTransitions][];
+        this.postWeights = new int[numberOfTransitions][];
+        this.events = new int[CAPACITY];
+        this.published = new AtomicLongArray(CAPACITY);
+        this.claimed = new AtomicLong(0);
+        this.lock = new ReentrantLock();
+        this.marking = new int[net.getNumberOfPlaces()];
+        this.observed = new int[net.getNumberOfPlaces()];
+        this.observedInFlight = new int[numberOfTransitions];
+        this.replayed = 0;
+        this.active = false;
+
+        for (int t = 1; t <= numberOfTransitions; t++) {
+            preSets[t - 1] = net.getPreSet(t);
+            preWeights[t - 1] = net.getPreWeights(t);
+            postSets[t - 1] = net.getPostSet(t);
+            postWeights[t - 1] = net.getPostWeights(t);
+        }
+    }
+
+    /**
+     * Checks if the firings are observed.
+     * @return True  if the firings have to be recorded
+     *         False otherwise
+     */
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Records a phase of the firing of the transition passed as argument. The mutexes of the clusters of the transition
+     * must be held, so the firings sharing places with it are recorded in the order they happened.
+     * @param transition Transition fired, starting at 1.
+     * @param phase FIRE, START or COMPLETE.
+     */
+    void record(int transition, int phase) {
+        long sequence = claimed.getAndIncrement();
+        int slot = (int) (sequence & (CAPACITY - 1));
+
+        while (sequence - replayed >= CAPACITY)
+            LockSupport.parkNanos(IDLE_TIME);
+
+        events[slot] = transition << 2 | phase;
+        published.setRelease(slot, sequence + 1);
+    }
+
+    /**
+     * Replays the events published, in order, until one is missing. The lock must be held.
+     */
+    private void replay() {
+        long sequence = replayed;
+
+        while (published.getAcquire((int) (sequence & (CAPACITY - 1))) == sequence + 1) {
+            int event = events[(int) (sequence & (CAPACITY - 1))];
+
+            apply(event >>> 2, event & 3);
+            replayed = ++sequence;
+        }
+    }
+
+    /**
+     * Applies a phase of the firing of a transition to the replayed marking and records it. If it is a sampled firing,
+     * the marking of the net is copied, recorded and checked.
+     * @param transition Transition fired, starting at 1.
+     * @param phase FIRE, START or COMPLETE.
+     */
+    private void apply(int transition, int phase) {
+        int t = transition - 1;
+
+        if (phase != COMPLETE)
+            for (int k = 0; k < preSets[t].length; k++)
+                marking[preSets[t][k]] -= preWeights[t][k];
+
+        if (phase != START)
+            for (int k = 0; k < postSets[t].length; k++)
+                marking[postSets[t][k]] += postWeights[t][k];
+
+        states.add(marking);
+
+        if (checker != null && checker.account(transition, phase == COMPLETE)) {
+            net.getMarking(observed, observedInFlight);
+            states.add(observed);
+            checker.verify(transition, observed, observedInFlight);
+        }
+    }
+
+    /**
+     * Replays the events until the firings are not observed any more.
+     */
+    private void run() {
+        while (active) {
+            boolean idle;
+
+            lock.lock();
+
+            try {
+                long before = replayed;
+
+                replay();
+
+                idle = replayed == before;
+            } finally {
+                lock.unlock();
+            }
+
+            if (idle)
+                LockSupport.parkNanos(IDLE_TIME);
+        }
+    }
+
+    /**
+     * Changes the states and the checker of the markings. If the firings were not observed, the replayed marking is
+     * taken from the compiled net, so it must be set while no transition is firing. The observer thread is started if
+     * the firings have to be observed.
+     * @param states Distinct markings reached, its mode OFF to not record them.
+     * @param checker Checker of the P-invariants, null to not check them.
+     */
+    void configure(MarkingStore states, InvariantChecker checker) {
+        lock.lock();
+
+        try {
+            replay();
+
+            if (!active)
+                net.getMarking(marking);
+
+            this.states = states;
+            this.checker = checker;
+            this.active = states.getMode() != MarkingStore.Mode.OFF || checker != null;
+
+            if (active && (thread == null || !thread.isAlive())) {
+                thread = new Thread(this::run, "[PetriNet - Observer]");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the states, with every firing recorded until now replayed.
+     * @return List of distinct states, empty if the states are not kept in FULL mode.
+     */
+    List<int[]> getStates() {
+        lock.lock();
+
+        try {
+            replay();
+
+            return states == null ? Collections.emptyList() : states.getMarkings();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the number of distinct states, with every firing recorded until now replayed.
+     * @return Number of distinct states reached.
+     */
+    long getStatesCount() {
+        lock.lock();
+
+        try {
+            replay();
+
+            return states == null ? 0 : states.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the number of P-invariant violations, with every firing recorded until now replayed.
+     * @return Number of violations, 0 if the invariants are not checked.
+     */
+    long getInvariantViolations() {
+        lock.lock();
+
+        try {
+            replay();
+
+            return checker == null ? 0 : checker.getViolations();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
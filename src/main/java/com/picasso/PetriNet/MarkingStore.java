@@ -0,0 +1,351 @@
+package com.picasso.PetriNet;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MarkingStore class keeps the distinct markings reached by a Petri Net.
+ * Markings are packed into 64 bits words, each place using the bits needed by its bound, and kept in an
+ * open addressing hash table of longs, on heap or off heap. The memory used depends on the number of distinct
+ * markings, not on the number of markings recorded.
+ */
+public final class MarkingStore {
+    /**
+     * Store modes enumeration
+     */
+    public enum Mode {
+        // Markings are not recorded
+        OFF,
+        // Only a 64 bits fingerprint of each distinct marking is kept, enough to count them
+        COUNT,
+        // Each distinct marking is kept packed and can be read back
+        FULL
+    };
+
+    // Number of bits of each word.
+    private static final int WORD_SIZE = Long.SIZE;
+    // Initial number of slots of the table.
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    // Empty slot marker, stored hashes always have the lowest bit set.
+    private static final long EMPTY = 0;
+
+    // Mode of the store.
+    private final Mode mode;
+    // True if the table is allocated off heap.
+    private final boolean offHeap;
+    // Number of places of each marking.
+    private final int numberOfPlaces;
+
+    // Bits of each place.
+    private final int[] widths;
+    // Word of each place.
+    private final int[] words;
+    // Offset of each place inside its word.
+    private final int[] offsets;
+    // Number of words of a packed marking.
+    private int markingWords;
+
+    // Slots of the table, each one is a hash followed by the packed marking in FULL mode.
+    private LongBuffer table;
+    // Number of slots of the table.
+    private int capacity;
+    // Number of longs of each slot.
+    private int slotSize;
+    // Number of distinct markings stored.
+    private long size;
+    // Number of markings recorded.
+    private long recorded;
+    // Scratch packed marking.
+    private long[] packed;
+
+    /**
+     * Constructor for MarkingStore class.
+     * @param mode Mode of the store.
+     * @param bounds Maximum number of tokens of each place, a negative value means unknown.
+     * @param offHeap True to allocate the table off heap.
+     */
+    public MarkingStore(Mode mode, int[] bounds, boolean offHeap) {
+        this.mode = mode;
+        this.offHeap = offHeap;
+        this.numberOfPlaces = bounds.length;
+
+        this.widths = new int[numberOfPlaces];
+        this.words = new int[numberOfPlaces];
+        this.offsets = new int[numberOfPlaces];
+
+        for (int i = 0; i < numberOfPlaces; i++)
+            widths[i] = bitsFor(Math.max(bounds[i], 1));
+
+        generateLayout();
+
+        this.capacity = INITIAL_CAPACITY;
+        this.slotSize = mode == Mode.FULL ? markingWords + 1 : 1;
+        this.table = mode == Mode.OFF ? null : allocate(capacity * slotSize);
+    }
+
+    /**
+     * Returns the number of bits needed for the value passed as argument.
+     * @param value Value to store.
+     * @return Number of bits.
+     */
+    private static int bitsFor(int value) {
+        return Math.max(WORD_SIZE - Long.numberOfLeadingZeros(value), 1);
+    }
+
+    /**
+     * Generates the word and offset of each place from the widths. A place never spans two words.
+     */
+    private void generateLayout() {
+        int word = 0;
+        int offset = 0;
+
+        for (int i = 0; i < numberOfPlaces; i++) {
+            if (offset + widths[i] > WORD_SIZE) {
+                word++;
+                offset = 0;
+            }
+
+            words[i] = word;
+            offsets[i] = offset;
+            offset += widths[i];
+        }
+
+        markingWords = word + 1;
+        packed = new long[markingWords];
+    }
+
+    /**
+     * Allocates a table of the size passed as argument with all the slots empty.
+     * @param longs Number of longs of the table.
+     * @return Table allocated.
+     */
+    private LongBuffer allocate(int longs) {
+        if (offHeap)
+            return ByteBuffer.allocateDirect(longs * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+
+        return LongBuffer.wrap(new long[longs]);
+    }
+
+    /**
+     * Packs the marking passed as argument into the scratch words.
+     * @param marking Marking to pack.
+     */
+    private void pack(int[] marking) {
+        for (int w = 0; w < markingWords; w++)
+            packed[w] = 0;
+
+        for (int i = 0; i < numberOfPlaces; i++)
+            packed[words[i]] |= ((long) marking[i]) << offsets[i];
+    }
+
+    /**
+     * Unpacks the marking stored in the slot passed as argument.
+     * @param slot Slot of the table.
+     * @return Marking stored in the slot.
+     */
+    private int[] unpack(int slot) {
+        int[] marking = new int[numberOfPlaces];
+        int base = slot * slotSize + 1;
+
+        for (int i = 0; i < numberOfPlaces; i++)
+            marking[i] = (int) ((table.get(base + words[i]) >>> offsets[i]) & ((1L << widths[i]) - 1));
+
+        return marking;
+    }
+
+    /**
+     * Checks that every place of the marking fits in its width, widening the layout if needed.
+     * @param marking Marking to check.
+     */
+    private void ensureFits(int[] marking) {
+        boolean widened = false;
+
+        for (int i = 0; i < numberOfPlaces && !widened; i++)
+            widened = marking[i] >>> widths[i] != 0;
+
+        if (!widened)
+            return;
+
+        List<int[]> markings = getMarkings();
+
+        for (int i = 0; i < numberOfPlaces; i++)
+            widths[i] = Math.max(widths[i], bitsFor(marking[i]));
+
+        generateLayout();
+
+        if (mode != Mode.FULL)
+            return;
+
+        slotSize = markingWords + 1;
+        rehash(markings, capacity);
+    }
+
+    /**
+     * Returns the 64 bits hash of the marking passed as argument. The lowest bit is always set.
+     * @param marking Marking to hash.
+     * @return Hash of the marking.
+     */
+    private static long hash(int[] marking) {
+        long h = 0x9E3779B97F4A7C15L;
+
+        for (int tokens : marking) {
+            h ^= tokens;
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+
+        h ^= h >>> 29;
+        h *= 0x94D049BB133111EBL;
+        h ^= h >>> 32;
+
+        return h | 1;
+    }
+
+    /**
+     * Inserts the scratch packed marking in the table if it is not stored yet.
+     * @param h Hash of the marking.
+     * @return True  if the marking was inserted
+     *         False if it was already stored
+     */
+    private boolean insert(long h) {
+        int mask = capacity - 1;
+        int slot = (int) (h >>> 1) & mask;
+
+        while (true) {
+            int base = slot * slotSize;
+            long stored = table.get(base);
+
+            if (stored == EMPTY) {
+                table.put(base, h);
+
+                for (int w = 1; w < slotSize; w++)
+                    table.put(base + w, packed[w - 1]);
+
+                return true;
+            }
+
+            if (stored == h && samePacked(base))
+                return false;
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Checks if the slot starting at the index passed as argument holds the scratch packed marking.
+     * @param base Index of the slot in the table.
+     * @return True  if the packed marking is the same
+     *         False otherwise
+     */
+    private boolean samePacked(int base) {
+        for (int w = 1; w < slotSize; w++)
+            if (table.get(base + w) != packed[w - 1])
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Rebuilds the table with the capacity passed as argument.
+     * @param markings Markings to insert in FULL mode, null to move the stored fingerprints.
+     * @param newCapacity New number of slots.
+     */
+    private void rehash(List<int[]> markings, int newCapacity) {
+        LongBuffer old = table;
+        int oldCapacity = capacity;
+
+        capacity = newCapacity;
+        table = allocate(capacity * slotSize);
+
+        if (markings != null) {
+            for (int[] marking : markings) {
+                pack(marking);
+                insert(hash(marking));
+            }
+
+            return;
+        }
+
+        for (int slot = 0; slot < oldCapacity; slot++)
+            if (old.get(slot) != EMPTY)
+                insert(old.get(slot));
+    }
+
+    /**
+     * Records the marking passed as argument.
+     * @param marking Marking to record.
+     * @return True  if the marking was not stored before
+     *         False otherwise, or if the store is OFF
+     */
+    public boolean add(int[] marking) {
+        if (mode == Mode.OFF)
+            return false;
+
+        recorded++;
+
+        ensureFits(marking);
+
+        if (mode == Mode.FULL)
+            pack(marking);
+
+        if (!insert(hash(marking)))
+            return false;
+
+        if (++size * 2 > capacity)
+            rehash(mode == Mode.FULL ? getMarkings() : null, capacity * 2);
+
+        return true;
+    }
+
+    /**
+     * Getter for the mode of the store.
+     * @return Mode of the store.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Getter for the number of distinct markings stored.
+     * @return Number of distinct markings, 0 if the store is OFF.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Getter for the number of markings recorded, including repeated ones.
+     * @return Number of markings recorded.
+     */
+    public long getRecordedCount() {
+        return recorded;
+    }
+
+    /**
+     * Getter for the memory used by the table.
+     * @return Number of bytes of the table.
+     */
+    public long getMemoryBytes() {
+        return table == null ? 0 : (long) table.capacity() * Long.BYTES;
+    }
+
+    /**
+     * Returns the distinct markings stored.
+     * @return List of markings, empty if the store is not in FULL mode.
+     */
+    public List<int[]> getMarkings() {
+        List<int[]> markings = new ArrayList<>();
+
+        if (mode != Mode.FULL)
+            return markings;
+
+        for (int slot = 0; slot < capacity; slot++)
+            if (table.get(slot * slotSize) != EMPTY)
+                markings.add(unpack(slot));
+
+        return markings;
+    }
+}
@@ -1,9 +1,9 @@
 package com.picasso.PetriNet;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import com.picasso.Data.Logger;
 
@@ -20,15 +20,19 @@ public class PetriNet extends PetriNetElement {
 
     // Incidence matrix of the Petri Net.
     private int[][] incidenceMatrix;
-    // Markings of the Petri Net.
-    private int[] markings;
     // Initial markings of the Petri Net.
     private int[] initialMarking;
-    // Enabled transitions of the Petri Net.
-    private int[] enabledTransitions;
-
-    // All markings states of the Petri Net.
-    final Set<int[]> states;
+    // Flat representation of the Petri Net used to check and fire transitions.
+    private CompiledPetriNet compiledNet;
+    // Places whose tokens change when each transition fires, starting at 0.
+    private int[][] touchedPlaces;
+
+    // Distinct markings states of the Petri Net.
+    private MarkingStore states;
+    // Checker of the P-invariants of the Petri Net, null if the markings are not checked.
+    private InvariantChecker invariantChecker;
+    // Observer replaying the firings into the states and the checker, off the firing path.
+    private final MarkingObserver observer;
 
     /**
      * Add new transition to the Petri Net.
@@ -53,10 +57,13 @@ public class PetriNet extends PetriNetElement {
      * @param name Name of the arc.
      * @param place Place of the arc.
      * @param transition Transition of the arc.
+     * @return Arc added.
      */
-    private void addArc(String name, Place place, Transition transition) {
+    private Arc addArc(String name, Place place, Transition transition) {
         Arc a = new Arc(name, place, transition);
         arcs.add(a);
+
+        return a;
     }
 
     /**
@@ -64,10 +71,13 @@ public class PetriNet extends PetriNetElement {
      * @param name Name of the arc.
      * @param transition Transition of the arc.
      * @param place Place of the arc.
+     * @return Arc added.
      */
-    private void addArc(String name, Transition transition, Place place) {
+    private Arc addArc(String name, Transition transition, Place place) {
         Arc a = new Arc(name, transition, place);
         arcs.add(a);
+
+        return a;
     }
 
     /**
@@ -78,8 +88,6 @@ public class PetriNet extends PetriNetElement {
     private void generatePlaces(int[] initialMarks, int cantPlaces) {
         for (int i = 0; i < cantPlaces; i++)
             this.addPlace("P" + (i + 1), initialMarks[i]);
-
-        this.markings = initialMarks;
     }
 
     /**
@@ -92,7 +100,7 @@ public class PetriNet extends PetriNetElement {
     }
 
     /**
-     * Generate arc of the Petri Net with the incidence matrix passed as argument.
+     * Generate arc of the Petri Net with the incidence matrix passed as argument. The weight of each arc is the absolute value of its incidence.
      * @param incidenceMatrix Incidence matrix of the Petri Net.
      * @param cantPlaces Number of places.
      * @param cantTransitions Number of transitions.
@@ -100,10 +108,10 @@ public class PetriNet extends PetriNetElement {
     private void generateIncidences(int[][] incidenceMatrix, int cantPlaces, int cantTransitions) {
         for (int i = 0; i < cantPlaces; i++) {
             for (int j = 0; j < cantTransitions; j++) {
-                if (incidenceMatrix[i][j] == 1)
-                    addArc("Arc" + (i + j + 1), transitions.get(j), places.get(i));
-                else if (incidenceMatrix[i][j] == -1)
-                    addArc("Arc" + (i + j + 1), places.get(i), transitions.get(j));
+                if (incidenceMatrix[i][j] > 0)
+                    addArc("Arc" + (i + j + 1), transitions.get(j), places.get(i)).setWeight(incidenceMatrix[i][j]);
+                else if (incidenceMatrix[i][j] < 0)
+                    addArc("Arc" + (i + j + 1), places.get(i), transitions.get(j)).setWeight(-incidenceMatrix[i][j]);
             }
         }
 
@@ -111,40 +119,35 @@ public class PetriNet extends PetriNetElement {
     }
 
     /**
-     * Update the enabled transitions of the Petri Net according to the markings.
+     * Generate the places touched by each transition, used to keep the places in sync with the compiled net.
+     * @param cantPlaces Number of places.
+     * @param cantTransitions Number of transitions.
      */
-    private void updateEnabledTransitions() {
-        enabledTransitions = new int[transitions.size()];
+    private void generateTouchedPlaces(int cantPlaces, int cantTransitions) {
+        touchedPlaces = new int[cantTransitions][];
 
-        for (int i = 0; i < transitions.size(); i++) {
-            int[] s = new int[places.size()];
+        for (int j = 0; j < cantTransitions; j++) {
+            final int transition = j;
 
-            for (int j = 0; j < places.size(); j++) {
-                s[j] = markings[j] + incidenceMatrix[j][i];
-
-                if (s[j] < 0) {
-                    enabledTransitions[i] = 0;
-                    break;
-                }
-
-                enabledTransitions[i] = 1;
-
-                transitions.get(i).setTimeStamp();
-            }
+            touchedPlaces[j] = IntStream.range(0, cantPlaces)
+                                        .filter(i -> incidenceMatrix[i][transition] != 0)
+                                        .toArray();
         }
     }
 
     /**
-     * Update the markings of the Petri Net according to the transition fired.
+     * Update the places of the Petri Net according to the transition fired in the compiled net, and record the firing.
+     * The firing is only written in the log of the observer, which records the marking reached and checks it in its own
+     * thread, so transitions of other conflict clusters firing at the same time do not wait for each other.
      * @param transition Transition fired.
+     * @param phase Phase of the firing, MarkingObserver.FIRE, START or COMPLETE.
      */
-    private void updateNet(int transition) {
-        for(int i = 0; i < places.size(); i++)
-            markings[i] += incidenceMatrix[i][transition - 1];
-
-        this.states.add(markings.clone());
+    private void updateNet(int transition, int phase) {
+        for (int i : touchedPlaces[transition - 1])
+            places.get(i).setTokens(compiledNet.getTokens(i));
 
-        updateEnabledTransitions();
+        if (observer.isActive())
+            observer.record(transition, phase);
     }
 
     /**
@@ -161,7 +164,6 @@ public class PetriNet extends PetriNetElement {
         places = new ArrayList<>();
         transitions = new ArrayList<>();
         arcs = new ArrayList<>();
-        states = new HashSet<>();
 
         generatePlaces(initialMarks, cantPlaces);
 
@@ -170,11 +172,15 @@ public class PetriNet extends PetriNetElement {
         initialMarking = new int[cantPlaces];
         System.arraycopy(initialMarks, 0, initialMarking, 0, cantPlaces);
 
-        this.states.add(initialMarks.clone());
-
         generateIncidences(incidenceMatrix, cantPlaces, cantTransitions);
 
-        updateEnabledTransitions();
+        generateTouchedPlaces(cantPlaces, cantTransitions);
+
+        compiledNet = new CompiledPetriNet(places, transitions, arcs);
+
+        observer = new MarkingObserver(compiledNet);
+
+        setStatesMode(MarkingStore.Mode.COUNT, false);
     }
 
     /**
@@ -187,31 +193,47 @@ public class PetriNet extends PetriNetElement {
      *          * AFTER_WINDOW if the transition is timed and the current time is after the time frame.
      */
     public Transition.TimedState checkTimedStateTransition(int transition) {
-        Transition t = getTransition(transition);
-
-        if (t.isTimed()) {
-            long currentTime = System.currentTimeMillis();
-            long time = currentTime - t.getTimeStamp();
+        if (compiledNet.isTimed(transition)) {
+            long now = System.nanoTime();
 
-            if (time < t.getAlfaTime())
+            if (now - compiledNet.getWindowOpening(transition) < 0)
             {
-                Logger.logTimed("COOL-DOWN -> " + t.getName() + " (" + time + "[ms] < " + t.getAlfaTime() + "[ms])");
+                Logger.logTimed("COOL-DOWN -> " + getTransition(transition).getName() + " (" + elapsedMillis(transition, now) + "[ms] < " + compiledNet.getAlfaTime(transition) + "[ms])");
 
                 return Transition.TimedState.BEFORE_WINDOW;
             }
-            else if (time <= t.getBetaTime())
+            else if (now - compiledNet.getWindowClosing(transition) <= 0)
                 return Transition.TimedState.IN_WINDOW;
             else
-            {
-                Logger.logTimed("TIME-OUT - " + t.getName() + " (" + time + "[ms] > " + t.getBetaTime() + "[ms])");
-
                 return Transition.TimedState.AFTER_WINDOW;
-            }
         }
 
         return Transition.TimedState.NO_TIMED;
     }
 
+    /**
+     * Sensibilizes again the timed transition passed as argument, which missed its time frame while it was enabled.
+     * The lock of the cluster of the transition must be held.
+     * @param transition Transition to sensibilize.
+     */
+    public void resensitizeTransition(int transition) {
+        long now = System.nanoTime();
+
+        Logger.logTimed("TIME-OUT - " + getTransition(transition).getName() + " (" + elapsedMillis(transition, now) + "[ms] > " + compiledNet.getBetaTime(transition) + "[ms])");
+
+        compiledNet.resensitize(transition, now);
+    }
+
+    /**
+     * Returns the time elapsed since the transition passed as argument was sensibilized.
+     * @param transition Transition to check.
+     * @param now Current instant, from System.nanoTime().
+     * @return Milliseconds since the time stamp of the transition.
+     */
+    private long elapsedMillis(int transition, long now) {
+        return TimeUnit.NANOSECONDS.toMillis(now - compiledNet.getTimeStamp(transition));
+    }
+
     /**
      * Check if the transition passed as argument is enabled.
      * @param transition Transition to check.
@@ -219,7 +241,7 @@ public class PetriNet extends PetriNetElement {
      *         False otherwise.
      */
     public boolean isEnabled(int transition) {
-        return enabledTransitions[transition - 1] == 1;
+        return compiledNet.isEnabled(transition);
     }
 
     /**
@@ -229,19 +251,51 @@ public class PetriNet extends PetriNetElement {
      *         False otherwise.
      */ 
     public boolean isTimedTransition(int transition) {
-        return (getTransition(transition).isTimed());
+        return compiledNet.isTimed(transition);
     }
 
     /**
      * Get the enabled transitions of the Petri Net.
-     * @return Array with all enabled transitions of the Petri Net.
+     * @return Array with one element per transition, 1 if the transition is enabled and 0 otherwise.
      */
     public int[] getEnableTransitions() {
-        return enabledTransitions;
+        long[] snapshot = compiledNet.getEnabledTransitionsMask();
+        int[] enabled = new int[transitions.size()];
+
+        for (int i = 0; i < enabled.length; i++)
+            enabled[i] = BitMask.get(snapshot, i) ? 1 : 0;
+
+        return enabled;
+    }
+
+    /**
+     * Get a snapshot of the enabled transitions. It can be read without holding the monitor.
+     * @return Bit mask of the enabled transitions, a new copy on each call.
+     */
+    public long[] getEnabledTransitionsMask() {
+        return compiledNet.getEnabledTransitionsMask();
     }
 
+    /**
+     * Getter for the flat representation of the Petri Net.
+     * @return Compiled net used to check and fire the transitions.
+     */
+    public CompiledPetriNet getCompiledNet() {
+        return compiledNet;
+    }
+
+    /**
+     * Getter for the transition passed as argument, with its time stamp taken from the compiled net.
+     * @param index Transition, starting at 1.
+     * @return Transition of the Petri Net.
+     */
     public Transition getTransition(int index) {
-        return transitions.get(index - 1);
+        Transition transition = transitions.get(index - 1);
+
+        if (compiledNet.isTimed(index))
+            transition.setTimeStamp(compiledNet.getTimeStamp(index));
+
+        return transition;
     }
 
     public int getNumberOfTransitions() {
@@ -258,10 +312,36 @@ public class PetriNet extends PetriNetElement {
 
     /**
      * Getter for the states of the Petri Net.
-     * @return Set of states of the Petri Net.
+     * @return List of distinct states of the Petri Net, empty if the states are not kept in FULL mode.
      */
-    public Set<int[]> getStates() {
-        return states;
+    public List<int[]> getStates() {
+        return observer.getStates();
+    }
+
+    /**
+     * Getter for the number of distinct states of the Petri Net.
+     * @return Number of distinct states reached, 0 if the states are not recorded.
+     */
+    public long getStatesCount() {
+        return observer.getStatesCount();
+    }
+
+    /**
+     * Change how the states of the Petri Net are recorded. The states recorded until now are discarded.
+     * It must be called while no transition is firing.
+     * @param mode Mode of the marking store.
+     * @param offHeap True to keep the states off heap.
+     */
+    public void setStatesMode(MarkingStore.Mode mode, boolean offHeap) {
+        int[] bounds = new int[places.size()];
+
+        for (int i = 0; i < bounds.length; i++)
+            bounds[i] = places.get(i).isUnlimited() ? compiledNet.getTokens(i) : places.get(i).getMaxTokens();
+
+        states = new MarkingStore(mode, bounds, offHeap);
+        states.add(compiledNet.getMarking());
+
+        observer.configure(states, invariantChecker);
     }
 
     /**
@@ -285,7 +365,27 @@ public class PetriNet extends PetriNetElement {
      * @return Array with the current markings of the Petri Net.
      */
     public int[] getCurrentMarking() {
-        return markings;
+        return compiledNet.getMarking();
+    }
+
+    /**
+     * Check the P-invariants passed as argument after the firings of the Petri Net. Violations are logged with the firing that revealed them.
+     * @param invariants P-invariants to check, each one with a weight per place.
+     * It must be called while no transition is firing.
+     * @param samplingRate Number of firings between two checks of the marking, 0 disables the checks.
+     */
+    public void setInvariantChecking(List<int[]> invariants, int samplingRate) {
+        invariantChecker = samplingRate > 0 ? new InvariantChecker(invariants, incidenceMatrix, compiledNet.getMarking(), samplingRate) : null;
+
+        observer.configure(states, invariantChecker);
+    }
+
+    /**
+     * Getter for the number of P-invariant violations found.
+     * @return Number of violations, 0 if the invariants are not checked.
+     */
+    public long getInvariantViolations() {
+        return observer.getInvariantViolations();
     }
 
     /**
@@ -314,6 +414,21 @@ public class PetriNet extends PetriNetElement {
             }
     }
 
+    /**
+     * Set the maximum number of tokens of the place passed as argument.
+     * @param name Name of the place.
+     * @param maxTokens Maximum number of tokens, -1 means unlimited.
+     * @throws IllegalStateException If a monitor already synchronizes the Petri Net, the capacities must be set before.
+     */
+    public void setPlaceMaxTokens(String name, int maxTokens) {
+        for(int i = 0; i < places.size(); i++)
+            if(places.get(i).getName().equals(name)) {
+                compiledNet.setCapacity(i, maxTokens);
+                places.get(i).setMaxTokens(maxTokens);
+                break;
+            }
+    }
+
     /**
      * Set time frame of the transition passed as argument.
      * @param name Name of the transition.
@@ -321,9 +436,10 @@ public class PetriNet extends PetriNetElement {
      * @param beta Final instant of the time frame.
      */
     public void setTransitionTime(String name, long alfa, long beta) {
-        for(Transition t : transitions)
-            if(t.getName().equals(name)) {
-                t.setTimeFrame(alfa, beta);
+        for(int i = 0; i < transitions.size(); i++)
+            if(transitions.get(i).getName().equals(name)) {
+                transitions.get(i).setTimeFrame(alfa, beta);
+                compiledNet.setTimeFrame(i + 1, alfa, beta);
                 break;
             }
     }
@@ -336,17 +452,42 @@ public class PetriNet extends PetriNetElement {
      *         False otherwise.
      */
     public boolean fireTransition(int transition) {
-        Transition t = getTransition(transition);
+        if (compiledNet.tryFire(transition))
+        {
+            updateNet(transition, MarkingObserver.FIRE);
+
+            return true;
+        }
 
-        if (t.canFire())
+        return false;
+    }
+
+    /**
+     * Start the firing of the transition passed as argument: its pre-set is consumed, but its post-set is not produced
+     * until the firing is completed. The markings recorded meanwhile lack the tokens of the post-set.
+     * @param transition Transition to start.
+     * @return True if the firing was started.
+     *         False otherwise.
+     */
+    public boolean startTransition(int transition) {
+        if (compiledNet.tryStart(transition))
         {
-            t.fire();
-            
-            updateNet(transition);
+            updateNet(transition, MarkingObserver.START);
 
             return true;
         }
 
         return false;
     }
+
+    /**
+     * Complete a firing of the transition passed as argument started before, producing its post-set.
+     * @param transition Transition to complete.
+     * @throws IllegalStateException If no firing of the transition was started.
+     */
+    public void completeTransition(int transition) {
+        compiledNet.complete(transition);
+
+        updateNet(transition, MarkingObserver.COMPLETE);
+    }
 }
@@ -87,6 +87,14 @@ public class Place extends PetriNetElement {
         return tokens;
     }
 
+    /**
+     * Returns the maximum number of tokens in the place
+     * @return Maximum number of tokens in the place, -1 if it is unlimited
+     */
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
     /**
      * Set the number of tokens in the place
      * @param tokens Number of tokens to set
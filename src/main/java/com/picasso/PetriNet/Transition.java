@@ -1,7 +1,6 @@
 package com.picasso.PetriNet;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -16,7 +15,7 @@ public class Transition extends PetriNetElement {
     private long alfaTime;
     // Instant when the transition is desensibilized
     private long betaTime;
-    // Last time the transition was sensibilized
+    // Last time the transition was sensibilized, from System.nanoTime()
     private long sensitizedTime;
     // True if the transition is timed
     private boolean timed;
@@ -63,16 +62,25 @@ public class Transition extends PetriNetElement {
     }
 
     /**
-     * Sets the last time the transition was fired to the current time
+     * Sets the last time the transition was sensibilized to the current time
      */
     public void setTimeStamp() {
         if (timed)
-            sensitizedTime = new Date().getTime();
+            sensitizedTime = System.nanoTime();
     }
 
     /**
-     * Getter for the last time the transition was fired
-     * @return Last time the transition was fired
+     * Sets the last time the transition was sensibilized to the time passed as argument
+     * @param timeStamp Time when the transition was sensibilized, from System.nanoTime()
+     */
+    public void setTimeStamp(long timeStamp) {
+        if (timed)
+            sensitizedTime = timeStamp;
+    }
+
+    /**
+     * Getter for the last time the transition was sensibilized
+     * @return Last time the transition was sensibilized, from System.nanoTime()
      */
     public long getTimeStamp() {
         return sensitizedTime;
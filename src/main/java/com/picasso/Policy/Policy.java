@@ -2,13 +2,60 @@ package com.picasso.Policy;
 
 /**
  * Policy interface is used to implement different policies for deciding which transition to fire next.
+ * A decision is taken while the monitor holds the mutex of a cluster, so it must not block and should not allocate.
+ * Decisions of different clusters, and the notifications of the monitor, can run at the same time.
  */
 public interface Policy {
     /**
      * Decides which transition to fire next.
-     * @param transitionsAbleToFire Array of transitions that are able to fire.
-     * @param args Additional arguments.
-     * @return Index of the transition to fire.
+     * @param transitionsAbleToFire Transitions that are able to fire, one bit per transition, bit 0 for the transition 1.
+     *                              It is owned by the monitor and must not be modified.
+     * @param context Read-only view of the state of the monitor.
+     * @return Transition to fire, starting at 1, or -1 if no transition is able to fire.
      */
-    public int decide(int[] transitionsAbleToFire, Object ... args);
+    public int decide(long[] transitionsAbleToFire, PolicyContext context);
+
+    /**
+     * Prepares the policy for the monitor passed as context, before its first decision.
+     * @param context Read-only view of the state of the monitor.
+     */
+    public default void init(PolicyContext context) {
+    }
+
+    /**
+     * Notifies the policy that a cycle of an invariant was completed.
+     * @param invariant Invariant, starting at 0.
+     * @param count Completed cycles of the invariant, this one included.
+     */
+    public default void onInvariantCompleted(int invariant, long count) {
+    }
+
+    /**
+     * Returns the transition with less transitions executed among the ones able to fire in the invariant. If more than one
+     * transition has the same number of transitions executed, the first one is returned.
+     * @param transitionsAbleToFire Transitions able to fire, one bit per transition.
+     * @param invariant Transitions of the invariant, one bit per transition, or null to take every transition able to fire.
+     * @param context Context with the fired count of each transition.
+     * @return Transition with less transitions executed, or -1 if there is none.
+     */
+    public static int getTransitionWithLessTransitionsExecuted(long[] transitionsAbleToFire, long[] invariant, PolicyContext context) {
+        int transitionToFire = -1;
+        long minCount = Long.MAX_VALUE;
+
+        for (int w = 0; w < transitionsAbleToFire.length; w++) {
+            long word = invariant == null ? transitionsAbleToFire[w] : transitionsAbleToFire[w] & invariant[w];
+
+            for (; word != 0; word &= word - 1) {
+                int transition = w * Long.SIZE + Long.numberOfTrailingZeros(word) + 1;
+                long count = context.getFiredCount(transition);
+
+                if (count < minCount) {
+                    transitionToFire = transition;
+                    minCount = count;
+                }
+            }
+        }
+
+        return transitionToFire;
+    }
 }
@@ -0,0 +1,272 @@
+package com.picasso.Policy;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.picasso.PetriNet.BitMask;
+
+/**
+ * PolicyBandit class is used to implement the policy that learns online which transition to fire, as a contextual
+ * multi-armed bandit. The context of a decision is the set of transitions able to fire, enabled and with waiters, hashed
+ * into a fixed number of buckets, and the arms are the transitions. The reward of a decision is the rate of the cycles
+ * completed by the invariants of its transition within a fixed time window after it, in cycles per second of each of
+ * those invariants, so a transition in two invariants is not rewarded twice for the same pace. The rate is divided by the
+ * reward rate and clipped at 1, so it is bounded, and cycles completed by unrelated invariants, in other clusters, are not
+ * credited to it. The decisions are kept pending, and each one updates the estimate of its own context when its window
+ * has elapsed, or earlier if too many decisions are pending, with the rate over the time it was pending.
+ * With the exploration rate the policy fires a random transition able to fire; otherwise the one with the best estimated
+ * reward in the context, the one with less firings on a tie. Estimates are updated in constant time with a constant step
+ * size, which weighs recent rewards more, so they follow the artists when their timings drift. The exploration rate and
+ * the step size can be changed while the monitor runs.
+ */
+public class PolicyBandit implements Policy {
+    // Number of buckets of the contexts
+    private static final int CONTEXTS = 256;
+    // Time, in nanoseconds, a decision waits for the cycles of its invariants before it is rewarded
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+    // Maximum number of pending decisions
+    private static final int PENDING = 256;
+
+    // Lock of the estimates, taken by the decisions of the clusters and the cycles completed
+    private final ReentrantLock lock;
+    // Random object for exploring
+    private final Random random;
+    // Estimated reward of each transition, starting at 0, in each context
+    private double[][] estimates;
+    // Probability of firing a random transition
+    private volatile double exploration;
+    // Weight of a new reward in the estimate
+    private volatile double stepSize;
+    // Cycles per second of an invariant that earn the full reward
+    private final double rewardRate;
+    // Transitions of each invariant, one bit per transition
+    private long[][] invariantMasks;
+    // Number of invariants of each transition, starting at 0
+    private int[] invariantCounts;
+    // Context of each pending decision, as a ring starting at the oldest one
+    private final int[] pendingContexts;
+    // Transition of each pending decision, starting at 0
+    private final int[] pendingTransitions;
+    // Time, in nanoseconds, each pending decision was taken
+    private final long[] pendingTimes;
+    // Cycles completed by the invariants of each pending decision since it was taken
+    private final long[] pendingCycles;
+    // Slot of the ring of the oldest pending decision
+    private int head;
+    // Number of pending decisions
+    private int size;
+
+    /**
+     * Constructor for PolicyBandit class. The estimates are empty until the policy is initialized by the monitor.
+     * @param exploration Probability of firing a random transition, between 0 and 1.
+     * @param stepSize Weight of a new reward in the estimate, between 0 and 1.
+     * @param rewardRate Cycles per second of an invariant that earn the full reward, greater than 0.
+     */
+    public PolicyBandit(double exploration, double stepSize, double rewardRate) {
+        if (rewardRate <= 0)
+            throw new IllegalArgumentException("The reward rate must be greater than 0");
+
+        this.lock = new ReentrantLock();
+        this.random = new Random();
+        this.estimates = new double[CONTEXTS][0];
+        this.rewardRate = rewardRate;
+        this.invariantMasks = new long[0][];
+        this.invariantCounts = new int[0];
+        this.pendingContexts = new int[PENDING];
+        this.pendingTransitions = new int[PENDING];
+        this.pendingTimes = new long[PENDING];
+        this.pendingCycles = new long[PENDING];
+        this.head = 0;
+        this.size = 0;
+
+        setExploration(exploration);
+        setStepSize(stepSize);
+    }
+
+    /**
+     * Setter for the exploration rate.
+     * @param exploration Probability of firing a random transition, between 0 and 1.
+     */
+    public void setExploration(double exploration) {
+        if (exploration < 0 || exploration > 1)
+            throw new IllegalArgumentException("The exploration rate must be between 0 and 1");
+
+        this.exploration = exploration;
+    }
+
+    /**
+     * Setter for the step size.
+     * @param stepSize Weight of a new reward in the estimate, greater than 0 and at most 1.
+     */
+    public void setStepSize(double stepSize) {
+        if (stepSize <= 0 || stepSize > 1)
+            throw new IllegalArgumentException("The step size must be greater than 0 and at most 1");
+
+        this.stepSize = stepSize;
+    }
+
+    /**
+     * Creates the estimates for the transitions of the monitor, the masks of its invariants and the number of invariants
+     * of each transition.
+     * @param context Context with the transitions and the invariants.
+     */
+    @Override
+    public void init(PolicyContext context) {
+        double[][] estimates = new double[CONTEXTS][context.getNumberOfTransitions()];
+        long[][] invariantMasks = new long[context.getNumberOfInvariants()][];
+        int[] invariantCounts = new int[context.getNumberOfTransitions()];
+
+        for (int i = 0; i < invariantMasks.length; i++) {
+            invariantMasks[i] = BitMask.create(context.getNumberOfTransitions());
+
+            for (int t = 1; t <= context.getNumberOfTransitions(); t++) {
+                if (context.isInInvariant(i, t)) {
+                    BitMask.set(invariantMasks[i], t - 1);
+                    invariantCounts[t - 1]++;
+                }
+            }
+        }
+
+        lock.lock();
+
+        try {
+            this.estimates = estimates;
+            this.invariantMasks = invariantMasks;
+            this.invariantCounts = invariantCounts;
+            this.head = 0;
+            this.size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts the cycle completed for the pending decisions whose transition belongs to the invariant completed.
+     * @param invariant Invariant completed, starting at 0.
+     * @param count Completed cycles of the invariant, this one included.
+     */
+    @Override
+    public void onInvariantCompleted(int invariant, long count) {
+        lock.lock();
+
+        try {
+            if (invariant >= invariantMasks.length)
+                return;
+
+            for (int k = 0; k < size; k++) {
+                int slot = (head + k) % PENDING;
+
+                if (BitMask.get(invariantMasks[invariant], pendingTransitions[slot]))
+                    pendingCycles[slot]++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decides which transition to fire next, updating the estimates of the pending decisions whose window has elapsed with their rewards.
+     * @param transitionsAbleToFire Transitions that are able to fire, one bit per transition.
+     * @param context Context with the fired count of each transition.
+     * @return Transition to fire, or -1 if no transition is able to fire.
+     */
+    public int decide(long[] transitionsAbleToFire, PolicyContext context) {
+        int count = BitMask.count(transitionsAbleToFire);
+
+        if (count == 0)
+            return -1;
+
+        lock.lock();
+
+        try {
+            long now = System.nanoTime();
+
+            while (size > 0 && (now - pendingTimes[head] >= WINDOW || size == PENDING)) {
+                reward(head, now);
+
+                head = (head + 1) % PENDING;
+                size--;
+            }
+
+            int bucket = getContext(transitionsAbleToFire);
+            int transition = random.nextDouble() < exploration ? BitMask.nth(transitionsAbleToFire, random.nextInt(count))
+                                                               : getBestTransition(transitionsAbleToFire, bucket, context);
+            int slot = (head + size) % PENDING;
+
+            pendingContexts[slot] = bucket;
+            pendingTransitions[slot] = transition - 1;
+            pendingTimes[slot] = now;
+            pendingCycles[slot] = 0;
+            size++;
+
+            return transition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates the estimate of a pending decision with its reward: the cycles completed by the invariants of its
+     * transition, per invariant and per second pending, divided by the reward rate and clipped at 1. The lock must be held.
+     * @param slot Slot of the ring of the decision.
+     * @param now Current time, in nanoseconds.
+     */
+    private void reward(int slot, long now) {
+        int transition = pendingTransitions[slot];
+        double[] rewards = estimates[pendingContexts[slot]];
+
+        if (transition >= rewards.length)
+            return;
+
+        double seconds = Math.max(now - pendingTimes[slot], 1) / 1e9;
+        double rate = invariantCounts[transition] == 0 ? 0 : pendingCycles[slot] / (invariantCounts[transition] * seconds);
+        double reward = Math.min(rate / rewardRate, 1);
+
+        rewards[transition] += stepSize * (reward - rewards[transition]);
+    }
+
+    /**
+     * Returns the bucket of the context of the transitions able to fire.
+     * @param transitionsAbleToFire Transitions able to fire, one bit per transition.
+     * @return Bucket of the context.
+     */
+    private int getContext(long[] transitionsAbleToFire) {
+        long hash = 0;
+
+        for (long word : transitionsAbleToFire)
+            hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash >>> (Long.SIZE - Integer.numberOfTrailingZeros(CONTEXTS)));
+    }
+
+    /**
+     * Returns the transition able to fire with the best estimated reward in the context. The lock must be held.
+     * @param transitionsAbleToFire Transitions able to fire, one bit per transition.
+     * @param bucket Bucket of the context.
+     * @param context Context of the monitor.
+     * @return Transition with the best estimated reward, the one with less firings on a tie.
+     */
+    private int getBestTransition(long[] transitionsAbleToFire, int bucket, PolicyContext context) {
+        double[] rewards = estimates[bucket];
+        int transitionToFire = -1;
+        double maxReward = Double.NEGATIVE_INFINITY;
+        long minCount = Long.MAX_VALUE;
+
+        for (int w = 0; w < transitionsAbleToFire.length; w++) {
+            for (long word = transitionsAbleToFire[w]; word != 0; word &= word - 1) {
+                int transition = w * Long.SIZE + Long.numberOfTrailingZeros(word) + 1;
+                double reward = transition <= rewards.length ? rewards[transition - 1] : 0;
+                long count = context.getFiredCount(transition);
+
+                if (reward > maxReward || (reward == maxReward && count < minCount)) {
+                    transitionToFire = transition;
+                    maxReward = reward;
+                    minCount = count;
+                }
+            }
+        }
+
+        return transitionToFire;
+    }
+}
@@ -0,0 +1,114 @@
+package com.picasso.Policy;
+
+/**
+ * PolicyContext interface gives a policy a read-only view of the state of the monitor deciding which transition to fire.
+ * The view is backed by the state of the monitor, not a copy, so reading it does not allocate. Values of clusters other
+ * than the one being decided can be slightly stale. Transitions start at 1 and invariants at 0.
+ */
+public interface PolicyContext {
+    /**
+     * Getter for the number of transitions of the Petri net.
+     * @return Number of transitions.
+     */
+    public int getNumberOfTransitions();
+
+    /**
+     * Checks if the transition passed as argument is enabled.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is enabled
+     *         False otherwise
+     */
+    public boolean isEnabled(int transition);
+
+    /**
+     * Checks if the transition passed as argument has threads, or asynchronous requests, waiting to fire it.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition has waiters
+     *         False otherwise
+     */
+    public boolean isWaiting(int transition);
+
+    /**
+     * Getter for the number of firings of the transition passed as argument.
+     * @param transition Transition, starting at 1.
+     * @return Number of firings.
+     */
+    public long getFiredCount(int transition);
+
+    /**
+     * Getter for the number of invariants counted by the monitor.
+     * @return Number of invariants.
+     */
+    public int getNumberOfInvariants();
+
+    /**
+     * Getter for the number of completed cycles of the invariant passed as argument.
+     * @param invariant Invariant, starting at 0.
+     * @return Number of completed cycles.
+     */
+    public long getInvariantFiredCount(int invariant);
+
+    /**
+     * Checks if the transition passed as argument belongs to the invariant passed as argument.
+     * @param invariant Invariant, starting at 0.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition belongs to the invariant
+     *         False otherwise
+     */
+    public boolean isInInvariant(int invariant, int transition);
+
+    /**
+     * Checks if the transition passed as argument is timed.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is timed
+     *         False otherwise
+     */
+    public boolean isTimed(int transition);
+
+    /**
+     * Returns the instant when the current time frame of the transition passed as argument opens.
+     * @param transition Timed transition, starting at 1.
+     * @return Instant, from System.nanoTime().
+     */
+    public long getWindowOpening(int transition);
+
+    /**
+     * Returns the instant when the current time frame of the transition passed as argument closes.
+     * @param transition Timed transition, starting at 1.
+     * @return Instant, from System.nanoTime().
+     */
+    public long getWindowClosing(int transition);
+
+    /**
+     * Getter for the number of places of the Petri net.
+     * @return Number of places.
+     */
+    public int getNumberOfPlaces();
+
+    /**
+     * Tries once to copy the current marking of the Petri net, one reached between two firings. It does not wait for the
+     * firings of other clusters in progress, the copy fails instead.
+     * @param marking Array where the marking is copied, indexed by place starting at 0.
+     * @return True  if the marking was copied
+     *         False otherwise
+     */
+    public boolean tryGetMarking(int[] marking);
+
+    /**
+     * Checks if the transition passed as argument is enabled by the marking passed as argument, without timing.
+     * @param marking Marking to check, indexed by place starting at 0.
+     * @param transition Transition, starting at 1.
+     * @return True  if the transition is enabled by the marking
+     *         False otherwise
+     */
+    public boolean isEnabled(int[] marking, int transition);
+
+    /**
+     * Stores in the result the marking reached by firing the transition passed as argument from the marking passed as
+     * argument, without changing the Petri net. The enabling of the transition is not checked.
+     * @param marking Marking to fire from, indexed by place starting at 0.
+     * @param transition Transition, starting at 1.
+     * @param result Marking reached, it can be the same array as the marking.
+     */
+    public void fire(int[] marking, int transition, int[] result);
+}
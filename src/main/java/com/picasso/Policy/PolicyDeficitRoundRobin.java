@@ -0,0 +1,237 @@
+package com.picasso.Policy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.picasso.PetriNet.BitMask;
+
+/**
+ * PolicyDeficitRoundRobin class is used to implement the policy that shares the cycles between the invariants at
+ * configured ratios, with a weighted deficit round-robin. The invariants take turns and each round every one of them gets
+ * a quantum of cycles, its weight. Each cycle an invariant completes costs one, whoever fired its transitions, and the turn
+ * moves on when the invariant of the turn runs out of credit. The invariant of the turn is preferred whenever it has
+ * transitions able to fire; otherwise the next ones with credit are, and when none of them can fire, the invariant with
+ * the largest credit among the ones able to fire is.
+ * The deficit of an invariant is kept in full, neither its credit nor its debt is capped: the cycles an invariant
+ * completes out of its turn are paid back in the next rounds, and the cycles it could not complete are given back when it
+ * can fire again, so the error of each ratio stays within one round of quantums however long the run is.
+ * The invariants with credit are kept in an active list in the order of their turns, and the union of their transitions
+ * in a mask. A decision takes the head of the list, dropping the invariants that ran out of credit, and falls back to the
+ * mask when the head has no transition able to fire; when the list runs empty it is refilled with as many quantums as
+ * it takes for an invariant to have credit again. The mask is rebuilt only when an invariant runs out of credit or the
+ * list is refilled, so a decision takes constant time amortized over the cycles completed, and chooses the transition
+ * with less firings.
+ * The policy only chooses among the threads waiting in the monitor, so an invariant cannot be pushed above the pace of
+ * the threads firing it.
+ */
+public class PolicyDeficitRoundRobin implements Policy {
+    // Transitions of each invariant with a weight, starting at 1
+    private final List<int[]> weightedInvariants;
+    // Weight of each invariant
+    private final List<Integer> weights;
+    // Lock of the turns, taken by the decisions of the clusters
+    private final ReentrantLock lock;
+    // Transitions of each invariant of the monitor, one bit per transition
+    private long[][] masks;
+    // Cycles given to each invariant in each turn
+    private long[] quantums;
+    // Cycles left to each invariant
+    private long[] deficits;
+    // Invariants with credit, in the order of their turns, as a circular queue starting at head
+    private int[] active;
+    // Position of the invariant of the current turn in the active list
+    private int head;
+    // Number of invariants in the active list
+    private int size;
+    // Transitions of the invariants with credit, one bit per transition
+    private long[] creditTransitions;
+    // True if an invariant ran out of credit since the transitions with credit were built
+    private boolean stale;
+
+    /**
+     * Constructor for PolicyDeficitRoundRobin class.
+     * @param invariants Transitions of each invariant with a weight, starting at 1.
+     * @param weights Weight of each invariant, the ratio of cycles between them. Invariants of the monitor not listed weigh 1.
+     */
+    public PolicyDeficitRoundRobin(List<int[]> invariants, List<Integer> weights) {
+        if (invariants.size() != weights.size() || weights.stream().anyMatch(w -> w <= 0))
+            throw new IllegalArgumentException("Each invariant needs a positive weight");
+
+        this.weightedInvariants = invariants;
+        this.weights = weights;
+        this.lock = new ReentrantLock();
+        this.masks = new long[0][];
+        this.quantums = new long[0];
+        this.deficits = new long[0];
+        this.active = new int[0];
+        this.head = 0;
+        this.size = 0;
+        this.creditTransitions = new long[0];
+        this.stale = false;
+    }
+
+    /**
+     * Builds the masks and the quantums of the invariants of the monitor, matching them with the weighted invariants by their transitions.
+     * @param context Context with the invariants of the monitor.
+     */
+    @Override
+    public void init(PolicyContext context) {
+        int numberOfInvariants = context.getNumberOfInvariants();
+        long[][] masks = new long[numberOfInvariants][];
+        long[] quantums = new long[numberOfInvariants];
+
+        for (int i = 0; i < numberOfInvariants; i++) {
+            masks[i] = BitMask.create(context.getNumberOfTransitions());
+
+            for (int t = 1; t <= context.getNumberOfTransitions(); t++)
+                if (context.isInInvariant(i, t))
+                    BitMask.set(masks[i], t - 1);
+
+            quantums[i] = getWeight(BitMask.toTransitions(masks[i]));
+        }
+
+        lock.lock();
+
+        try {
+            this.masks = masks;
+            this.quantums = quantums;
+            this.deficits = new long[numberOfInvariants];
+            this.active = new int[numberOfInvariants];
+            this.head = 0;
+            this.size = 0;
+            this.creditTransitions = BitMask.create(context.getNumberOfTransitions());
+
+            refill();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the weight of the invariant passed as argument.
+     * @param transitions Transitions of the invariant, starting at 1, in ascending order.
+     * @return Weight of the invariant, 1 if it has no weight.
+     */
+    private int getWeight(int[] transitions) {
+        for (int i = 0; i < weightedInvariants.size(); i++) {
+            int[] invariant = weightedInvariants.get(i).clone();
+
+            Arrays.sort(invariant);
+
+            if (Arrays.equals(invariant, transitions))
+                return weights.get(i);
+        }
+
+        return 1;
+    }
+
+    /**
+     * Charges the cycle completed to the credit of the invariant.
+     * @param invariant Invariant completed, starting at 0.
+     * @param count Completed cycles of the invariant, this one included.
+     */
+    @Override
+    public void onInvariantCompleted(int invariant, long count) {
+        lock.lock();
+
+        try {
+            if (invariant < deficits.length) {
+                if (deficits[invariant] == 1)
+                    stale = true;
+
+                deficits[invariant]--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decides which transition to fire next.
+     * @param transitionsAbleToFire Transitions that are able to fire, one bit per transition.
+     * @param context Context with the fired count of each transition.
+     * @return Transition to fire, or -1 if no transition is able to fire.
+     */
+    public int decide(long[] transitionsAbleToFire, PolicyContext context) {
+        long[] invariantToFire = null;
+
+        lock.lock();
+
+        try {
+            while (size > 0 && deficits[active[head]] <= 0) {
+                head = (head + 1) % active.length;
+                size--;
+            }
+
+            if (size == 0 && active.length > 0)
+                refill();
+
+            if (stale)
+                updateCreditTransitions();
+
+            if (size > 0 && BitMask.intersects(masks[active[head]], transitionsAbleToFire))
+                invariantToFire = masks[active[head]];
+            else if (BitMask.intersects(creditTransitions, transitionsAbleToFire))
+                invariantToFire = creditTransitions;
+            else
+                invariantToFire = getInvariantWithMoreCredit(transitionsAbleToFire);
+        } finally {
+            lock.unlock();
+        }
+
+        return Policy.getTransitionWithLessTransitionsExecuted(transitionsAbleToFire, invariantToFire, context);
+    }
+
+    /**
+     * Returns the transitions of the invariant with the largest credit, or the smallest debt, among the ones with
+     * transitions able to fire. The lock must be held.
+     * @param transitionsAbleToFire Transitions that are able to fire, one bit per transition.
+     * @return Transitions of the invariant, one bit per transition, or null if no invariant is able to fire.
+     */
+    private long[] getInvariantWithMoreCredit(long[] transitionsAbleToFire) {
+        int best = -1;
+
+        for (int i = 0; i < deficits.length; i++)
+            if (BitMask.intersects(masks[i], transitionsAbleToFire) && (best == -1 || deficits[i] > deficits[best]))
+                best = i;
+
+        return best == -1 ? null : masks[best];
+    }
+
+    /**
+     * Starts a new round: gives every invariant as many quantums of credit as it takes for at least one of them to have
+     * credit, and adds the ones with credit to the active list. The list must be empty and the lock must be held.
+     */
+    private void refill() {
+        long rounds = Long.MAX_VALUE;
+
+        for (int i = 0; i < deficits.length; i++)
+            rounds = Math.min(rounds, (quantums[i] - deficits[i]) / quantums[i]);
+
+        head = 0;
+
+        for (int i = 0; i < deficits.length; i++) {
+            deficits[i] += rounds * quantums[i];
+
+            if (deficits[i] > 0)
+                active[size++] = i;
+        }
+
+        updateCreditTransitions();
+    }
+
+    /**
+     * Builds the transitions of the invariants with credit. The lock must be held.
+     */
+    private void updateCreditTransitions() {
+        Arrays.fill(creditTransitions, 0);
+
+        for (int i = 0; i < deficits.length; i++)
+            if (deficits[i] > 0)
+                for (int w = 0; w < creditTransitions.length; w++)
+                    creditTransitions[w] |= masks[i][w];
+
+        stale = false;
+    }
+}
@@ -0,0 +1,81 @@
+package com.picasso.Policy;
+
+/**
+ * PolicyEarliestDeadline class is used to implement the policy that fires the timed transition whose time frame closes first.
+ * Among the transitions able to fire, the timed ones whose time frame is open are ranked by the time left until it closes,
+ * so a waiter is woken before its transition misses the time frame and has to be sensibilized again. Timed transitions
+ * whose time frame has not opened yet, or has already closed, are not urgent. If no timed transition is urgent, the
+ * decision is left to PolicyMinTransitions, which balances the invariants.
+ */
+public class PolicyEarliestDeadline implements Policy {
+    // Policy for the decisions without urgent timed transitions
+    private final Policy fallback;
+
+    /**
+     * Constructor for PolicyEarliestDeadline class. Initializes the policy for the untimed decisions.
+     */
+    public PolicyEarliestDeadline() {
+        this.fallback = new PolicyMinTransitions();
+    }
+
+    /**
+     * Initializes the policy for the untimed decisions.
+     * @param context Context of the monitor.
+     */
+    @Override
+    public void init(PolicyContext context) {
+        fallback.init(context);
+    }
+
+    /**
+     * Notifies the policy for the untimed decisions.
+     * @param invariant Invariant completed, starting at 0.
+     * @param count Completed cycles of the invariant, this one included.
+     */
+    @Override
+    public void onInvariantCompleted(int invariant, long count) {
+        fallback.onInvariantCompleted(invariant, count);
+    }
+
+    /**
+     * Decides which transition to fire next.
+     * @param transitionsAbleToFire Transitions that are able to fire, one bit per transition.
+     * @param context Context with the time frames of the transitions.
+     * @return Transition to fire, or -1 if no transition is able to fire.
+     */
+    public int decide(long[] transitionsAbleToFire, PolicyContext context) {
+        int transition = getTransitionWithEarliestDeadline(transitionsAbleToFire, context);
+
+        return transition > 0 ? transition : fallback.decide(transitionsAbleToFire, context);
+    }
+
+    /**
+     * Returns the timed transition able to fire whose open time frame closes first.
+     * @param transitionsAbleToFire Transitions able to fire, one bit per transition.
+     * @param context Context of the monitor.
+     * @return Transition with the earliest deadline, or -1 if no timed transition has its time frame open.
+     */
+    private int getTransitionWithEarliestDeadline(long[] transitionsAbleToFire, PolicyContext context) {
+        long now = System.nanoTime();
+        int transitionToFire = -1;
+        long minRemaining = Long.MAX_VALUE;
+
+        for (int w = 0; w < transitionsAbleToFire.length; w++) {
+            for (long word = transitionsAbleToFire[w]; word != 0; word &= word - 1) {
+                int transition = w * Long.SIZE + Long.numberOfTrailingZeros(word) + 1;
+
+                if (!context.isTimed(transition) || now - context.getWindowOpening(transition) < 0)
+                    continue;
+
+                long remaining = context.getWindowClosing(transition) - now;
+
+                if (remaining >= 0 && remaining < minRemaining) {
+                    transitionToFire = transition;
+                    minRemaining = remaining;
+                }
+            }
+        }
+
+        return transitionToFire;
+    }
+}
@@ -0,0 +1,253 @@
+package com.picasso.Policy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * PolicyLookahead class is used to implement the policy that simulates a few firings ahead of each candidate transition.
+ * From a copy of the current marking, each transition able to fire is fired and followed by a path of firings, without
+ * timing, up to the depth of the policy, firing the transitions with less firings as the monitor would balance them.
+ * A candidate is scored by the invariant cycles completed along the path, counted as the monitor counts them: a cycle
+ * of an invariant is completed each time every one of its transitions has fired once more. Candidates completing the
+ * same cycles are ranked by the share of the tokens of the resource places still free at the end of the path, so paths
+ * that hold the shared resources score lower, and the transition with less firings is fired among the best ones.
+ * The candidates are simulated on scratch markings allocated once. The time budget of a decision starts before the
+ * marking is copied: the copy is retried while other clusters are firing, and if the budget runs out before a
+ * consistent copy is taken the transition with less firings is fired. The simulation stops when the budget runs out,
+ * deciding among the candidates simulated so far. The scratch markings are shared by the clusters, so a decision that
+ * finds them in use by another cluster does not wait and fires the transition with less firings.
+ */
+public class PolicyLookahead implements Policy {
+    // Weight of the free tokens of the resource places in the score of a candidate, below one cycle
+    private static final double CONTENTION_WEIGHT = 0.5;
+    // Difference with the best score for a candidate to be as good as the best one, only rounding errors
+    private static final double TOLERANCE = 1e-9;
+
+    // Lock of the scratch markings, only tried by the decisions
+    private final ReentrantLock lock;
+    // Transitions simulated ahead, the candidate included
+    private final int depth;
+    // Maximum time, in nanoseconds, simulated in each decision
+    private final long budget;
+    // Resource places, starting at 0
+    private final int[] resourcePlaces;
+    // Transitions of each invariant, starting at 0
+    private int[][] invariants;
+    // Scratch markings, the current one and the ones reached at each step
+    private int[][] markings;
+    // Scratch firings of each transition in the simulated path, starting at 0
+    private int[] simulatedFirings;
+    // Scratch firings of each transition when the decision started, starting at 0
+    private long[] firedCounts;
+    // Scratch cycles of each invariant completed when the decision started
+    private long[] completedCycles;
+    // Scratch transitions of the simulated path
+    private int[] path;
+    // Scratch candidates simulated in a decision
+    private int[] candidates;
+    // Scratch score of each candidate simulated in a decision
+    private double[] scores;
+
+    /**
+     * Constructor for PolicyLookahead class. The scratch markings are empty until the policy is initialized by the monitor.
+     * @param depth Transitions simulated ahead, the candidate included, at least 1.
+     * @param budget Maximum time, in microseconds, simulated in each decision.
+     * @param resourcePlaces Resource places, starting at 1.
+     */
+    public PolicyLookahead(int depth, long budget, int[] resourcePlaces) {
+        if (depth < 1)
+            throw new IllegalArgumentException("The depth must be at least 1");
+
+        this.lock = new ReentrantLock();
+        this.depth = depth;
+        this.budget = TimeUnit.MICROSECONDS.toNanos(budget);
+        this.resourcePlaces = new int[resourcePlaces.length];
+        this.invariants = new int[0][];
+        this.markings = new int[0][];
+        this.simulatedFirings = new int[0];
+        this.firedCounts = new long[0];
+        this.completedCycles = new long[0];
+        this.path = new int[depth];
+        this.candidates = new int[0];
+        this.scores = new double[0];
+
+        for (int i = 0; i < resourcePlaces.length; i++)
+            this.resourcePlaces[i] = resourcePlaces[i] - 1;
+    }
+
+    /**
+     * Creates the scratch markings and the transitions of each invariant.
+     * @param context Context with the places, transitions and invariants of the monitor.
+     */
+    @Override
+    public void init(PolicyContext context) {
+        int numberOfTransitions = context.getNumberOfTransitions();
+        int[][] invariants = new int[context.getNumberOfInvariants()][];
+
+        for (int i = 0; i < invariants.length; i++) {
+            final int invariant = i;
+
+            invariants[i] = IntStream.range(0, numberOfTransitions)
+                                     .filter(t -> context.isInInvariant(invariant, t + 1))
+                                     .toArray();
+        }
+
+        int[][] markings = new int[depth + 1][context.getNumberOfPlaces()];
+
+        lock.lock();
+
+        try {
+            this.invariants = invariants;
+            this.markings = markings;
+            this.simulatedFirings = new int[numberOfTransitions];
+            this.firedCounts = new long[numberOfTransitions];
+            this.completedCycles = new long[invariants.length];
+            this.candidates = new int[numberOfTransitions];
+            this.scores = new double[numberOfTransitions];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decides which transition to fire next.
+     * @param transitionsAbleToFire Transitions that are able to fire, one bit per transition.
+     * @param context Context with the marking and the fired count of each transition.
+     * @return Transition to fire, or -1 if no transition is able to fire.
+     */
+    public int decide(long[] transitionsAbleToFire, PolicyContext context) {
+        if (!lock.tryLock())
+            return Policy.getTransitionWithLessTransitionsExecuted(transitionsAbleToFire, null, context);
+
+        try {
+            if (markings.length == 0)
+                return Policy.getTransitionWithLessTransitionsExecuted(transitionsAbleToFire, null, context);
+
+            long deadline = System.nanoTime() + budget;
+
+            while (!context.tryGetMarking(markings[0])) {
+                if (System.nanoTime() - deadline > 0)
+                    return Policy.getTransitionWithLessTransitionsExecuted(transitionsAbleToFire, null, context);
+
+                Thread.onSpinWait();
+            }
+
+            for (int t = 0; t < firedCounts.length; t++)
+                firedCounts[t] = context.getFiredCount(t + 1);
+
+            for (int i = 0; i < invariants.length; i++)
+                completedCycles[i] = getCompletedCycles(i);
+
+            double maxScore = Double.NEGATIVE_INFINITY;
+            int simulated = 0;
+            boolean expired = false;
+            int resources = getResources(markings[0]);
+
+            for (int w = 0; w < transitionsAbleToFire.length && !expired; w++) {
+                for (long word = transitionsAbleToFire[w]; word != 0 && !expired; word &= word - 1) {
+                    int transition = w * Long.SIZE + Long.numberOfTrailingZeros(word) + 1;
+
+                    candidates[simulated] = transition;
+                    scores[simulated] = simulate(transition, resources, context);
+                    maxScore = Math.max(maxScore, scores[simulated]);
+                    simulated++;
+                    expired = System.nanoTime() - deadline > 0;
+                }
+            }
+
+            int transitionToFire = -1;
+            long minCount = Long.MAX_VALUE;
+
+            for (int i = 0; i < simulated; i++) {
+                long count = firedCounts[candidates[i] - 1];
+
+                if (scores[i] >= maxScore - TOLERANCE && count < minCount) {
+                    transitionToFire = candidates[i];
+                    minCount = count;
+                }
+            }
+
+            return transitionToFire;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Scores a candidate by firing it from the current marking and following a path of firings. Each step fires the
+     * enabled transition with less firings, counting the ones simulated in the path, the first one on a tie, as the
+     * monitor would balance them. The lock must be held.
+     * @param candidate Candidate transition, starting at 1.
+     * @param resources Tokens of the resource places in the current marking.
+     * @param context Context of the monitor.
+     * @return Invariant cycles completed along the path, the candidate included, plus the weighted share of free
+     *         resource tokens at its end, at most the ones at the start.
+     */
+    private double simulate(int candidate, int resources, PolicyContext context) {
+        int transition = candidate;
+        int step = 0;
+
+        while (transition > 0) {
+            context.fire(markings[step], transition, markings[step + 1]);
+            path[step] = transition;
+            simulatedFirings[transition - 1]++;
+            step++;
+
+            transition = -1;
+
+            if (step == depth)
+                break;
+
+            long minCount = Long.MAX_VALUE;
+
+            for (int t = 1; t <= firedCounts.length; t++) {
+                long count = firedCounts[t - 1] + simulatedFirings[t - 1];
+
+                if (count < minCount && context.isEnabled(markings[step], t)) {
+                    transition = t;
+                    minCount = count;
+                }
+            }
+        }
+
+        long cycles = 0;
+
+        for (int i = 0; i < invariants.length; i++)
+            cycles += getCompletedCycles(i) - completedCycles[i];
+
+        for (int i = 0; i < step; i++)
+            simulatedFirings[path[i] - 1]--;
+
+        return cycles + CONTENTION_WEIGHT * Math.min((double) getResources(markings[step]) / Math.max(resources, 1), 1);
+    }
+
+    /**
+     * Returns the cycles of the invariant passed as argument completed with the firings counted when the decision started
+     * and the ones simulated, the firings of the transition of the invariant fired less times. The lock must be held.
+     * @param invariant Invariant, starting at 0.
+     * @return Completed cycles of the invariant.
+     */
+    private long getCompletedCycles(int invariant) {
+        long cycles = Long.MAX_VALUE;
+
+        for (int t : invariants[invariant])
+            cycles = Math.min(cycles, firedCounts[t] + simulatedFirings[t]);
+
+        return invariants[invariant].length == 0 ? 0 : cycles;
+    }
+
+    /**
+     * Returns the tokens of the resource places in the marking passed as argument.
+     * @param marking Marking, indexed by place starting at 0.
+     * @return Sum of the tokens of the resource places.
+     */
+    private int getResources(int[] marking) {
+        int resources = 0;
+
+        for (int place : resourcePlaces)
+            resources += marking[place];
+
+        return resources;
+    }
+}
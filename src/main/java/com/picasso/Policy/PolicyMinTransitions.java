@@ -1,80 +1,232 @@
 package com.picasso.Policy;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.picasso.PetriNet.BitMask;
 
 /**
  * PolicyMinTransitions class is used to implement the policy that fires the transition with less invariant transitions executed.
  * If there are more than one transition with the same number of invariant transitions executed, the policy fires the transition with less transitions executed.
  * If there are more than one transition with the same number of invariant transitions executed and the same number of transitions executed, the policy fires the first transition.
+ * The invariants are kept in an indexed min-heap ordered by their completed cycles, updated as the monitor completes them,
+ * and each invariant has a mask of its transitions. A decision visits the heap in order, from the root, until it finds an
+ * invariant whose mask intersects the transitions able to fire, so it does not scan all the invariants.
  */
 public class PolicyMinTransitions implements Policy {
+    // Lock of the heap, updated when an invariant is completed while other clusters take decisions
+    private final ReentrantLock lock;
+    // Completed cycles of each invariant
+    private long[] counts;
+    // Invariants ordered as a binary min-heap by completed cycles, then by index
+    private int[] heap;
+    // Position of each invariant in the heap
+    private int[] positions;
+    // Transitions of each invariant, one bit per transition
+    private long[][] masks;
+    // Positions of the heap to visit in a decision, ordered as a binary min-heap by their invariants
+    private int[] frontier;
+
+    /**
+     * Constructor for PolicyMinTransitions class. The heap is empty until the policy is initialized by the monitor.
+     */
+    public PolicyMinTransitions() {
+        this.lock = new ReentrantLock();
+        this.counts = new long[0];
+        this.heap = new int[0];
+        this.positions = new int[0];
+        this.masks = new long[0][];
+        this.frontier = new int[0];
+    }
+
+    /**
+     * Builds the masks of the invariants and the heap with their completed cycles.
+     * @param context Context with the invariants and their completed cycles.
+     */
+    @Override
+    public void init(PolicyContext context) {
+        int numberOfInvariants = context.getNumberOfInvariants();
+        long[][] masks = new long[numberOfInvariants][];
+
+        for (int i = 0; i < numberOfInvariants; i++) {
+            masks[i] = BitMask.create(context.getNumberOfTransitions());
+
+            for (int t = 1; t <= context.getNumberOfTransitions(); t++)
+                if (context.isInInvariant(i, t))
+                    BitMask.set(masks[i], t - 1);
+        }
+
+        lock.lock();
+
+        try {
+            this.counts = new long[numberOfInvariants];
+            this.heap = new int[numberOfInvariants];
+            this.positions = new int[numberOfInvariants];
+            this.masks = masks;
+            this.frontier = new int[numberOfInvariants];
+
+            for (int i = 0; i < numberOfInvariants; i++) {
+                counts[i] = context.getInvariantFiredCount(i);
+                heap[i] = i;
+                positions[i] = i;
+            }
+
+            for (int p = numberOfInvariants / 2 - 1; p >= 0; p--)
+                siftDown(p);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the invariant passed as argument down the heap to its new count. Counts only grow, so it never moves up.
+     * @param invariant Invariant completed, starting at 0.
+     * @param count Completed cycles of the invariant, this one included.
+     */
+    @Override
+    public void onInvariantCompleted(int invariant, long count) {
+        lock.lock();
+
+        try {
+            if (invariant < counts.length && count > counts[invariant]) {
+                counts[invariant] = count;
+                siftDown(positions[invariant]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
     /**
      * Decides which transition to fire next.
-     * @param transitionsAbleToFire Array of transitions that are able to fire.
-     * @param args Map of fired transitions and their count and map of invariants and their count.
-     * @return Index of the transition to fire.
+     * @param transitionsAbleToFire Transitions that are able to fire, one bit per transition.
+     * @param context Context with the fired count of each transition.
+     * @return Transition to fire, or -1 if no transition is able to fire.
+     */
+    public int decide(long[] transitionsAbleToFire, PolicyContext context) {
+        long[] invariantToFire;
+
+        lock.lock();
+
+        try {
+            int invariant = getInvariantWithLessTransitionsExecuted(transitionsAbleToFire);
+
+            invariantToFire = invariant < 0 ? null : masks[invariant];
+        } finally {
+            lock.unlock();
+        }
+
+        return Policy.getTransitionWithLessTransitionsExecuted(transitionsAbleToFire, invariantToFire, context);
+    }
+
+    /**
+     * Returns the invariant with less executions among the ones with transitions able to fire. The heap is visited in
+     * order through the frontier: the least invariant of the frontier is checked and, if it has no transition able to
+     * fire, replaced by its children in the heap. The lock must be held.
+     * @param transitionsAbleToFire Transitions able to fire, one bit per transition.
+     * @return Invariant with less executions, or -1 if no invariant has transitions able to fire.
      */
-    @SuppressWarnings("unchecked")
-    public int decide(int[] transitionsAbleToFire, Object ... args) {    
-        int[] transitionsAbleToFireInInvariant = null;
-
-        if (transitionsAbleToFire.length == 0)
-            return -1;
-        
-        Map<Integer, Integer> transitionsFiredCount = new HashMap<>((Map<Integer, Integer>) args[0]);
-        Map<int[], Integer> invariantsTransitionsFiredCount = new HashMap<>((Map<int[], Integer>) args[1]);
-
-        do {
-            int[] invariantToFire = getInvariantWithLessTransitionsExecuted(invariantsTransitionsFiredCount);
-        
-            transitionsAbleToFireInInvariant = getTransitionsAbleToFireInInvariant(invariantToFire, transitionsAbleToFire);
-        
-            invariantsTransitionsFiredCount.remove(invariantToFire);
-        } while (transitionsAbleToFireInInvariant.length == 0);
-        
-        int transitionToFire = getTransitionWithLessTransitionsExecuted(transitionsAbleToFireInInvariant, transitionsFiredCount);
-
-        return transitionToFire;
+    private int getInvariantWithLessTransitionsExecuted(long[] transitionsAbleToFire) {
+        int size = 0;
+
+        if (heap.length > 0)
+            frontier[size++] = 0;
+
+        while (size > 0) {
+            int position = frontier[0];
+            int invariant = heap[position];
+
+            if (BitMask.intersects(masks[invariant], transitionsAbleToFire))
+                return invariant;
+
+            frontier[0] = frontier[--size];
+            siftDownFrontier(size);
+
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < heap.length; child++)
+                size = pushFrontier(child, size);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Checks if an invariant goes before another one in the heap.
+     * @param a First invariant.
+     * @param b Second invariant.
+     * @return True  if the first invariant has less completed cycles, or the same and a lower index
+     *         False otherwise
+     */
+    private boolean less(int a, int b) {
+        return counts[a] < counts[b] || (counts[a] == counts[b] && a < b);
+    }
+
+    /**
+     * Moves the invariant at the position passed as argument down the heap until its children go after it.
+     * @param position Position in the heap.
+     */
+    private void siftDown(int position) {
+        int invariant = heap[position];
+
+        while (2 * position + 1 < heap.length) {
+            int child = 2 * position + 1;
+
+            if (child + 1 < heap.length && less(heap[child + 1], heap[child]))
+                child++;
+
+            if (!less(heap[child], invariant))
+                break;
+
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+
+        heap[position] = invariant;
+        positions[invariant] = position;
     }
 
     /**
-     * Returns the invariant with less executions.
-     * @param invariantsTransitionsFiredCount Map of invariants and their fire count.
-     * @return Invariant with less executions.
+     * Adds a position of the heap to the frontier.
+     * @param position Position in the heap.
+     * @param size Size of the frontier.
+     * @return New size of the frontier.
      */
-    private int[] getInvariantWithLessTransitionsExecuted(Map<int[], Integer> invariantsTransitionsFiredCount) {
-        return invariantsTransitionsFiredCount.entrySet()
-                                              .stream()
-                                              .min(Map.Entry.comparingByValue())
-                                              .map(Map.Entry::getKey)
-                                              .orElse(null);
+    private int pushFrontier(int position, int size) {
+        int i = size;
+
+        while (i > 0 && less(heap[position], heap[frontier[(i - 1) / 2]])) {
+            frontier[i] = frontier[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+
+        frontier[i] = position;
+
+        return size + 1;
     }
 
     /**
-     * Returns the transitions able to fire in the invariant. 
-     * @param invariant Invariant to check.
-     * @param transitionsAbleToFire Array of transitions able to fire.
-     * @return Array of transitions able to fire in the invariant.
+     * Moves the first position of the frontier down until its children go after it.
+     * @param size Size of the frontier.
      */
-    private int[] getTransitionsAbleToFireInInvariant(int[] invariant, int[] transitionsAbleToFire) {
-        return Arrays.stream(transitionsAbleToFire)
-                     .filter(transition -> Arrays.stream(invariant).anyMatch(t -> t == transition))
-                     .toArray();
-     }
-
-     /**
-      * Returns the transition with less transitions executed.
-      * @param transitionsAbleToFire Array of transitions able to fire.
-      * @param transitionsFiredCount Map of transitions and their fire count.
-      * @return Transition with less transitions executed.
-      */
-    private int getTransitionWithLessTransitionsExecuted(int[] transitionsAbleToFire, Map<Integer, Integer> transitionsFiredCount) {
-        return Arrays.stream(transitionsAbleToFire)
-                     .boxed()
-                     .min((t1, t2) -> Integer.compare(transitionsFiredCount.getOrDefault(t1, 0), transitionsFiredCount.getOrDefault(t2, 0)))
-                     .orElse(-1);
+    private void siftDownFrontier(int size) {
+        if (size == 0)
+            return;
+
+        int index = 0;
+        int position = frontier[index];
+
+        while (2 * index + 1 < size) {
+            int child = 2 * index + 1;
+
+            if (child + 1 < size && less(heap[frontier[child + 1]], heap[frontier[child]]))
+                child++;
+
+            if (!less(heap[frontier[child]], heap[position]))
+                break;
+
+            frontier[index] = frontier[child];
+            index = child;
+        }
+
+        frontier[index] = position;
     }
 }
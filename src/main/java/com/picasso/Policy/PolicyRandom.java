@@ -2,6 +2,8 @@ package com.picasso.Policy;
 
 import java.util.Random;
 
+import com.picasso.PetriNet.BitMask;
+
 /**
  * PolicyRandom class is used to implement the policy that fires a random transition.
  */
@@ -18,14 +20,16 @@ public class PolicyRandom implements Policy {
 
     /**
      * Decides which transition to fire next.
-     * @param transitionsAbleToFire Array of transitions that are able to fire.
-     * @param args not used.
-     * @return Index of the transition to fire.
+     * @param transitionsAbleToFire Transitions that are able to fire, one bit per transition.
+     * @param context not used.
+     * @return Transition to fire, or -1 if no transition is able to fire.
      */
-    public int decide(int[] transitionsAbleToFire, Object ... args) {
-        if (transitionsAbleToFire.length == 0)
+    public int decide(long[] transitionsAbleToFire, PolicyContext context) {
+        int count = BitMask.count(transitionsAbleToFire);
+
+        if (count == 0)
             return -1;
         
-        return transitionsAbleToFire[random.nextInt(transitionsAbleToFire.length)];
+        return BitMask.nth(transitionsAbleToFire, random.nextInt(count));
     }
 }
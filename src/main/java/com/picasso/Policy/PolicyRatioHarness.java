@@ -0,0 +1,112 @@
+package com.picasso.Policy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.picasso.Config;
+import com.picasso.Artist.Artist;
+import com.picasso.Data.Logger;
+import com.picasso.Monitor.Monitor;
+import com.picasso.PetriNet.MarkingStore;
+import com.picasso.PetriNet.PetriNet;
+import com.picasso.Segment.Segment;
+
+/**
+ * PolicyRatioHarness class reports the ratios of cycles the invariants achieve against the target ratios of their weights.
+ * The Petri net, segments and threads of Config are run with artists that sleep for a fixed time, once with
+ * PolicyDeficitRoundRobin and once with PolicyMinTransitions as reference, and each run reports the cycles of each
+ * invariant, its share of all the cycles, the share its weight targets and the largest difference between them.
+ * Usage: PolicyRatioHarness [weights, comma separated] [seconds per run] [artist work in milliseconds].
+ */
+public class PolicyRatioHarness {
+    /**
+     * Main method of the harness.
+     * @param args Weights of the invariants of Config, Config.INVARIANTS_WEIGHTS by default, seconds per run, 10 by
+     *             default, and artist work, 1ms by default.
+     */
+    public static void main(String[] args) {
+        List<Integer> weights = args.length > 0 ? Arrays.stream(args[0].split(",")).map(Integer::valueOf).collect(Collectors.toList())
+                                                : Config.INVARIANTS_WEIGHTS;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        long workMillis = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        run("DEFICIT ROUND-ROBIN", new PolicyDeficitRoundRobin(Config.INVARIANTS_TRANSITIONS, weights), weights, seconds, workMillis);
+        run("MIN TRANSITIONS", new PolicyMinTransitions(), weights, seconds, workMillis);
+
+        Logger.shutdown();
+    }
+
+    /**
+     * Runs the segments with the policy passed as argument for the time passed as argument and prints the ratios.
+     * @param name Name of the run.
+     * @param policy Policy of the monitor.
+     * @param weights Weights of the invariants of Config.
+     * @param seconds Seconds to fire transitions.
+     * @param workMillis Milliseconds each artist works.
+     */
+    private static void run(String name, Policy policy, List<Integer> weights, long seconds, long workMillis) {
+        PetriNet petriNet = new PetriNet("PetriNet", Config.INITIAL_MARKING, Config.INCIDENCE_MATRIX, Config.NUMBER_OF_PLACES, Config.NUMBER_OF_TRANSITIONS);
+
+        petriNet.setStatesMode(MarkingStore.Mode.OFF, false);
+
+        Monitor monitor = new Monitor(petriNet, policy, Config.INVARIANTS_TRANSITIONS);
+        Artist artist = () -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(workMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        List<Thread> threads = new ArrayList<>();
+
+        for (int s = 0; s < Config.SEGMENT_TRANSITIONS.size(); s++) {
+            Map<Integer, Artist> segmentTransitions = new HashMap<>();
+
+            for (Map.Entry<Integer, Artist> entry : Config.SEGMENT_TRANSITIONS.get(s).entrySet())
+                segmentTransitions.put(entry.getKey(), entry.getValue() == null ? null : artist);
+
+            Segment segment = new Segment(String.valueOf(s), monitor, segmentTransitions);
+
+            for (int j = 0; j < Config.SEGMENT_THREADS.get(s); j++)
+                threads.add(new Thread(segment, "[Segment " + segment.getName() + " - Thread " + j + "]"));
+        }
+
+        threads.forEach(Thread::start);
+
+        try {
+            TimeUnit.SECONDS.sleep(seconds);
+
+            monitor.interrupt();
+
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        Map<int[], Integer> cycles = monitor.getInvariantsTransitionsFiredCount();
+        long totalCycles = cycles.values().stream().mapToLong(Integer::longValue).sum();
+        long totalWeights = weights.stream().mapToLong(Integer::longValue).sum();
+        double maxError = 0;
+
+        System.out.printf("%s -> %d cycles in %ds%n", name, totalCycles, seconds);
+
+        for (int i = 0; i < Config.INVARIANTS_TRANSITIONS.size(); i++) {
+            int[] invariant = Config.INVARIANTS_TRANSITIONS.get(i);
+            long count = cycles.entrySet().stream().filter(e -> Arrays.equals(e.getKey(), invariant)).mapToLong(Map.Entry::getValue).sum();
+            double achieved = totalCycles == 0 ? 0 : 100.0 * count / totalCycles;
+            double target = 100.0 * weights.get(i) / totalWeights;
+
+            maxError = Math.max(maxError, Math.abs(achieved - target));
+
+            System.out.printf("\tINV %-18s -> %6d cycles, achieved %5.1f%%, target %5.1f%%%n", Arrays.toString(invariant), count, achieved, target);
+        }
+
+        System.out.printf("\tMAX ERROR -> %.1f%%%n", maxError);
+    }
+}
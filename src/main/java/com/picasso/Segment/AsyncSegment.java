@@ -0,0 +1,86 @@
+package com.picasso.Segment;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.picasso.Data.Logger;
+import com.picasso.Artist.Artist;
+import com.picasso.Monitor.Monitor;
+
+/**
+ * AsyncSegment class implements a segment of the Petri net as a chain of asynchronous firings. It fires the transitions
+ * of the segment in the same order as Segment, but no thread waits while a transition is not enabled: each firing
+ * continues the chain on the executor, so many segments can share a small pool.
+ */
+public class AsyncSegment {
+    // Array of transitions that are fired together
+    private final Map<Integer, Artist> transitions;
+    // Transitions of the segment in firing order
+    private final int[] order;
+    // Monitor for synchronization
+    private final Monitor monitor;
+    // Executor running the artists and the chain of firings
+    private final Executor executor;
+    // Name of the segment
+    private final String name;
+
+    /**
+     * Constructor for AsyncSegment class.
+     * @param name Name of the segment.
+     * @param monitor Monitor for synchronization.
+     * @param transitions Array of transitions that are fired together.
+     * @param executor Executor running the artists and the chain of firings.
+     */
+    public AsyncSegment(String name, Monitor monitor, Map<Integer, Artist> transitions, Executor executor) {
+        this.monitor = monitor;
+        this.transitions = transitions;
+        this.order = transitions.keySet().stream().mapToInt(Integer::intValue).toArray();
+        this.executor = executor;
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the segment.
+     * @return String with the name of the segment.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Starts firing the transitions of the segment.
+     * @return Future completed when the monitor is interrupted.
+     */
+    public CompletableFuture<Void> start() {
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        fire(0, finished);
+
+        return finished;
+    }
+
+    /**
+     * Fires the transition at the position passed as argument and, once it is fired, makes the artist work and continues with the next one.
+     * @param index Position of the transition in the firing order.
+     * @param finished Future completed when the monitor is interrupted.
+     */
+    private void fire(int index, CompletableFuture<Void> finished) {
+        if (monitor.isInterrupted()) {
+            Logger.logSystem(String.format("FINISHED -> [Segment %s]", name));
+
+            finished.complete(null);
+
+            return;
+        }
+
+        int t = order[index];
+
+        monitor.fireTransitionAsync(t).thenAcceptAsync(fired -> {
+            if (fired && transitions.get(t) != null)
+                transitions.get(t).work();
+
+            fire((index + 1) % order.length, finished);
+        }, executor);
+    }
+}
@@ -1,10 +1,13 @@
 package com.picasso.Segment;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.picasso.Config;
 import com.picasso.Data.Logger;
 import com.picasso.Artist.Artist;
-import com.picasso.Monitor.Monitor;
+import com.picasso.Monitor.MonitorInterface;
 
 /**
  * Segment class is used to implement a segment of the Petri net. A segment is a set of transitions that are fired together.
@@ -13,9 +16,13 @@ public class Segment implements Runnable {
     // Array of transitions that are fired together
     private final Map<Integer, Artist> transitions;
     // Monitor for synchronization
-    private final Monitor monitor;
+    private final MonitorInterface monitor;
     // Name of the segment
     private final String name;
+    // Time, in nanoseconds, the artists of the segment have worked
+    private final LongAdder workTime;
+    // Number of times the artists of the segment have worked
+    private final LongAdder works;
 
     /**
      * Constructor for Segment class.
@@ -23,10 +30,12 @@ public class Segment implements Runnable {
      * @param monitor Monitor for synchronization.
      * @param transitions Array of transitions that are fired together.
      */
-    public Segment(String name, Monitor monitor, Map<Integer, Artist> transitions) {
+    public Segment(String name, MonitorInterface monitor, Map<Integer, Artist> transitions) {
         this.monitor = monitor;
         this.transitions = transitions;
         this.name = name;
+        this.workTime = new LongAdder();
+        this.works = new LongAdder();
     }
 
     /**
@@ -38,23 +47,64 @@ public class Segment implements Runnable {
     }
 
     /**
-     * Fires the transitions of the segment.
+     * Returns the transitions of the segment in firing order.
+     * @return Array of transitions, starting at 1.
+     */
+    int[] getTransitions() {
+        return transitions.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the time the artists of the segment have worked.
+     * @return Time in nanoseconds.
+     */
+    long getWorkTime() {
+        return workTime.sum();
+    }
+
+    /**
+     * Returns the number of times the artists of the segment have worked.
+     * @return Number of works.
+     */
+    long getWorks() {
+        return works.sum();
+    }
+
+    /**
+     * Makes the artist of a transition fired work. The firing is logged by the monitor.
+     * @param transition Transition fired.
+     */
+    void fired(int transition) {
+        Artist artist = transitions.get(transition);
+
+        if (artist != null) {
+            long start = System.nanoTime();
+
+            artist.work();
+
+            workTime.add(System.nanoTime() - start);
+            works.increment();
+        }
+    }
+
+    /**
+     * Fires the transitions of the segment once, in order. A transition that cannot be fired within the wait time of
+     * Config is skipped, so a blocked transition does not hold back the others.
+     */
+    void fireRound() {
+        for (int t : transitions.keySet())
+            if (monitor.tryFire(t, Config.SEGMENT_WAIT_TIME, TimeUnit.MILLISECONDS))
+                fired(t);
+    }
+
+    /**
+     * Fires the transitions of the segment until the monitor is interrupted.
      */
     @Override
     public void run() {
         try {
-            while (!monitor.isInterrupted()) {
-                for (int t : transitions.keySet()) {
-                    Artist artist = transitions.get(t);
-
-                    if (monitor.fireTransition(t, false)) {
-                        Logger.logTransition(String.format("FIRED -> T%-2d ON %-35s", t, Thread.currentThread().getName()));
-
-                        if (artist != null)
-                            artist.work();
-                    }
-                }
-            }         
+            while (!monitor.isInterrupted())
+                fireRound();
         }
         finally {
             Logger.logSystem(String.format("FINISHED -> %-35s", Thread.currentThread().getName()));
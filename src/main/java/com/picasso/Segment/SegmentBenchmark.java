@@ -0,0 +1,173 @@
+package com.picasso.Segment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.picasso.Config;
+import com.picasso.Artist.Artist;
+import com.picasso.Data.Logger;
+import com.picasso.Monitor.Monitor;
+import com.picasso.PetriNet.MarkingStore;
+import com.picasso.PetriNet.PetriNet;
+import com.picasso.Policy.PolicyRandom;
+
+/**
+ * SegmentBenchmark class measures the throughput of the Monitor as the number of segments grows. The Petri net of Config
+ * is replicated as many times as requested, without time frames, and each replica gets the segments and threads of Config,
+ * with artists that sleep for a fixed time. The threads of a run are all created and started before any of them fires,
+ * and they are released together; the firings are counted at the release and again after a fixed time, and the run
+ * reports the firings per second between both counts. The threads are then given a bounded time to stop.
+ * Usage: SegmentBenchmark [replicas, comma separated] [seconds per run] [artist work in milliseconds] [virtual threads].
+ */
+public class SegmentBenchmark {
+    // Maximum time, in milliseconds, the threads of a run are given to stop after the monitor is interrupted
+    private static final long TEARDOWN_TIME = 10_000;
+
+    /**
+     * Main method of the benchmark.
+     * @param args Replicas of each run, 1,10,100,250 by default, seconds per run, 5 by default, artist work, 1ms by default,
+     *             and true to run the segments on virtual threads, true by default.
+     */
+    public static void main(String[] args) {
+        int[] replicas = Arrays.stream((args.length > 0 ? args[0] : "1,10,100,250").split(",")).mapToInt(Integer::parseInt).toArray();
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        long workMillis = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        boolean virtual = args.length > 3 ? Boolean.parseBoolean(args[3]) : true;
+
+        System.out.printf("THREADS -> %s%n", virtual && SegmentThreads.isVirtualSupported() ? "virtual" : "platform");
+
+        for (int r : replicas)
+            run(r, seconds, workMillis, virtual);
+
+        Logger.shutdown();
+    }
+
+    /**
+     * Runs the segments of the replicated Petri net for the time passed as argument and prints the throughput.
+     * @param replicas Number of replicas of the Petri net.
+     * @param seconds Seconds to fire transitions.
+     * @param workMillis Milliseconds each artist works.
+     * @param virtual True to run the segments on virtual threads.
+     */
+    private static void run(int replicas, long seconds, long workMillis, boolean virtual) {
+        int places = Config.NUMBER_OF_PLACES;
+        int transitions = Config.NUMBER_OF_TRANSITIONS;
+        int[] marking = new int[places * replicas];
+        int[][] incidenceMatrix = new int[places * replicas][transitions * replicas];
+        List<int[]> invariants = new ArrayList<>();
+
+        for (int r = 0; r < replicas; r++) {
+            System.arraycopy(Config.INITIAL_MARKING, 0, marking, r * places, places);
+
+            for (int p = 0; p < places; p++)
+                System.arraycopy(Config.INCIDENCE_MATRIX[p], 0, incidenceMatrix[r * places + p], r * transitions, transitions);
+
+            for (int[] invariant : Config.INVARIANTS_TRANSITIONS)
+                invariants.add(offset(invariant, r * transitions));
+        }
+
+        PetriNet petriNet = new PetriNet("PetriNet", marking, incidenceMatrix, places * replicas, transitions * replicas);
+
+        petriNet.setStatesMode(MarkingStore.Mode.OFF, false);
+
+        Monitor monitor = new Monitor(petriNet, new PolicyRandom(), invariants);
+        Artist artist = () -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(workMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        List<Thread> threads = new ArrayList<>();
+        int numberOfThreads = replicas * Config.SEGMENT_THREADS.stream().mapToInt(Integer::intValue).sum();
+        CountDownLatch ready = new CountDownLatch(numberOfThreads);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int r = 0; r < replicas; r++) {
+            for (int s = 0; s < Config.SEGMENT_TRANSITIONS.size(); s++) {
+                Map<Integer, Artist> segmentTransitions = new HashMap<>();
+
+                for (Map.Entry<Integer, Artist> entry : Config.SEGMENT_TRANSITIONS.get(s).entrySet())
+                    segmentTransitions.put(entry.getKey() + r * transitions, entry.getValue() == null ? null : artist);
+
+                Segment segment = new Segment(r + "-" + s, monitor, segmentTransitions);
+                Runnable task = () -> {
+                    ready.countDown();
+
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    segment.run();
+                };
+
+                for (int j = 0; j < Config.SEGMENT_THREADS.get(s); j++)
+                    threads.add(SegmentThreads.newThread(task, "[Segment " + segment.getName() + " - Thread " + j + "]", virtual));
+            }
+        }
+
+        threads.forEach(Thread::start);
+
+        long elapsed = 0;
+        long fired = 0;
+        long cycles = 0;
+        long alive = 0;
+
+        try {
+            ready.await();
+            release.countDown();
+
+            long start = System.nanoTime();
+
+            fired = -total(monitor.getTransitionsFiredCount());
+            cycles = -total(monitor.getInvariantsTransitionsFiredCount());
+
+            TimeUnit.SECONDS.sleep(seconds);
+
+            fired += total(monitor.getTransitionsFiredCount());
+            cycles += total(monitor.getInvariantsTransitionsFiredCount());
+            elapsed = System.nanoTime() - start;
+
+            monitor.interrupt();
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TEARDOWN_TIME);
+
+            for (Thread thread : threads)
+                thread.join(Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1));
+
+            alive = threads.stream().filter(Thread::isAlive).count();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        System.out.printf("REPLICAS -> %4d, %6d threads: %8d firings, %7d invariants in %.2fs (%.0f firings/s)%s%n",
+                          replicas, threads.size(), fired, cycles, elapsed / 1e9, fired * 1e9 / elapsed,
+                          alive > 0 ? ", " + alive + " threads did not stop" : "");
+    }
+
+    /**
+     * Returns the sum of the counts passed as argument.
+     * @param counts Map of counts.
+     * @return Sum of the counts.
+     */
+    private static long total(Map<?, Integer> counts) {
+        return counts.values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    /**
+     * Returns the transitions passed as argument moved by an offset.
+     * @param transitions Transitions, starting at 1.
+     * @param offset Offset to add.
+     * @return New array with the transitions moved.
+     */
+    private static int[] offset(int[] transitions, int offset) {
+        return Arrays.stream(transitions).map(t -> t + offset).toArray();
+    }
+}
@@ -0,0 +1,161 @@
+package com.picasso.Segment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+
+import com.picasso.Data.Logger;
+import com.picasso.Monitor.MonitorInterface;
+
+/**
+ * SegmentExecutor class runs the segments of the Petri net on a shared pool of workers instead of binding threads to each
+ * segment. Each segment keeps a deque of runs, a run being a pass through the transitions of the segment in order, with
+ * as many runs as threads the segment would get. A worker takes the runs of its own segment first and, when they cannot
+ * be fired, steals the runs of the other segments, so no worker sits idle while another segment has work pending.
+ * A run only moves to the next transition once the current one is fired and its artist has worked, and it is held by a
+ * single worker at a time, so the order of each segment is kept.
+ */
+public class SegmentExecutor {
+    /**
+     * Run class is a pass through the transitions of a segment.
+     */
+    private static final class Run {
+        // Segment of the run
+        private final Segment segment;
+        // Index of the deque of the segment
+        private final int deque;
+        // Transitions of the segment in firing order
+        private final int[] transitions;
+        // Position of the next transition to fire
+        private int next;
+
+        /**
+         * Constructor for Run class.
+         * @param segment Segment of the run.
+         * @param deque Index of the deque of the segment.
+         */
+        private Run(Segment segment, int deque) {
+            this.segment = segment;
+            this.deque = deque;
+            this.transitions = segment.getTransitions();
+            this.next = 0;
+        }
+    }
+
+    // Monitor for synchronization
+    private final MonitorInterface monitor;
+    // Runs of each segment not held by a worker
+    private final List<Deque<Run>> deques;
+    // Workers of the pool, not started
+    private final List<Thread> workers;
+    // Maximum time, in milliseconds, a worker waits for a transition when no run could be fired
+    private final long waitTime;
+
+    /**
+     * Constructor for SegmentExecutor class. The workers are created but not started.
+     * @param monitor Monitor for synchronization.
+     * @param segments Segments of the Petri net.
+     * @param runs Number of runs of each segment.
+     * @param workers Number of workers. If it is not positive, the available processors, with at least one worker per segment.
+     * @param waitTime Maximum time, in milliseconds, a worker waits for a transition when no run could be fired.
+     * @param virtual True to run the workers on virtual threads if the JVM supports them.
+     */
+    public SegmentExecutor(MonitorInterface monitor, Segment[] segments, List<Integer> runs, int workers, long waitTime, boolean virtual) {
+        this.monitor = monitor;
+        this.deques = new ArrayList<>();
+        this.workers = new ArrayList<>();
+        this.waitTime = waitTime;
+
+        for (int s = 0; s < segments.length; s++) {
+            Deque<Run> deque = new ConcurrentLinkedDeque<>();
+
+            for (int r = 0; r < runs.get(s); r++)
+                deque.addLast(new Run(segments[s], s));
+
+            deques.add(deque);
+        }
+
+        if (workers <= 0)
+            workers = Math.max(Runtime.getRuntime().availableProcessors(), segments.length);
+
+        for (int w = 0; w < workers; w++) {
+            int home = w % segments.length;
+            String name = "[Worker " + w + " - Segment " + segments[home].getName() + "]";
+
+            this.workers.add(SegmentThreads.newThread(() -> work(home), name, virtual));
+        }
+    }
+
+    /**
+     * Returns the workers of the pool.
+     * @return Unmodifiable list of the workers, not started.
+     */
+    public List<Thread> getWorkers() {
+        return Collections.unmodifiableList(workers);
+    }
+
+    /**
+     * Takes a run, from the deque passed as argument if it has one, or stolen from the other deques otherwise.
+     * @param from Index of the deque to take from first.
+     * @return Run taken, null if all the runs are held by other workers.
+     */
+    private Run take(int from) {
+        Run run = deques.get(from).pollFirst();
+
+        for (int i = 1; run == null && i < deques.size(); i++)
+            run = deques.get((from + i) % deques.size()).pollLast();
+
+        return run;
+    }
+
+    /**
+     * Fires the runs of the segments until the monitor is interrupted. A run that cannot be fired is given back and the
+     * worker moves to the next segment. After a round of the segments without firing, the worker parks in the monitor
+     * waiting for the transition of the run it holds, until it is woken by a firing or a deadline or the wait time runs
+     * out, so it does not spin on the mutexes of the clusters and the monitor can decide which waiter to wake.
+     * A run whose transition is timed and enabled is not given back before its time frame: the worker parks waiting for
+     * it, so the transition keeps a waiter through its time frame, as a thread bound to its segment would.
+     * @param home Index of the deque of the segment of the worker.
+     */
+    private void work(int home) {
+        int from = home;
+        int misses = 0;
+
+        try {
+            while (!monitor.isInterrupted()) {
+                Run run = take(from);
+
+                if (run == null) {
+                    TimeUnit.MILLISECONDS.sleep(waitTime);
+                    continue;
+                }
+
+                int t = run.transitions[run.next];
+                boolean park = misses >= deques.size() || (monitor.isTimed(t) && monitor.isEnabled(t));
+                boolean fired = park ? monitor.tryFire(t, waitTime, TimeUnit.MILLISECONDS) : monitor.tryFire(t);
+
+                if (fired) {
+                    run.segment.fired(t);
+                    run.next = (run.next + 1) % run.transitions.length;
+
+                    from = home;
+                    misses = 0;
+                }
+                else {
+                    from = (from + 1) % deques.size();
+                    misses = park ? 0 : misses + 1;
+                }
+
+                deques.get(run.deque).addLast(run);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            Logger.logSystem(String.format("FINISHED -> %-35s", Thread.currentThread().getName()));
+        }
+    }
+}
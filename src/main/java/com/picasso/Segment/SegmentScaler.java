@@ -0,0 +1,267 @@
+package com.picasso.Segment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.picasso.Data.Logger;
+import com.picasso.Monitor.MonitorInterface;
+
+/**
+ * SegmentScaler class grows and shrinks the threads of each segment at runtime, within bounds, looking for the allocation
+ * that completes the most invariants per second. Along each period it samples the waiters of the transitions of each
+ * segment in the monitor, and at the end of the period it reads the time the artists of each segment have worked:
+ * - A segment whose threads are working almost all the time and hardly wait in the monitor gets one more thread.
+ * - A segment with more than one thread waiting in the monitor on average gives one back.
+ * A single segment changes per period, so the effect on the invariants completed can be measured. A change followed by
+ * a drop of the invariants completed per second is undone and the segment is left alone for some periods.
+ */
+public class SegmentScaler implements Runnable {
+    // Samples of the waiters taken along each period
+    private static final int SAMPLES = 10;
+    // Fraction of the time the threads of a segment must be working to get one more thread
+    private static final double BUSY = 0.75;
+    // Average waiters of a segment to give one thread back
+    private static final double IDLE = 1.5;
+    // Fraction of the invariants completed per second lost after a change to undo it
+    private static final double LOSS = 0.1;
+    // Periods a segment is left alone after undoing a change
+    private static final int HOLD_PERIODS = 5;
+
+    // Monitor for synchronization
+    private final MonitorInterface monitor;
+    // Segments of the Petri net
+    private final Segment[] segments;
+    // Transitions of each segment
+    private final int[][] transitions;
+    // Number of threads each segment should have
+    private final int[] threads;
+    // Threads of each segment asked to finish and not finished yet
+    private final AtomicInteger[] retiring;
+    // Number of threads created for each segment, to name them
+    private final int[] created;
+    // Periods each segment is left alone
+    private final int[] hold;
+    // All the threads started, to wait for them
+    private final List<Thread> started;
+    // Minimum number of threads of each segment
+    private final int minThreads;
+    // Maximum number of threads of each segment
+    private final int maxThreads;
+    // Time, in milliseconds, between two decisions
+    private final long period;
+    // True to run the segments on virtual threads if the JVM supports them
+    private final boolean virtual;
+
+    /**
+     * Constructor for SegmentScaler class. No thread is started until the scaler runs.
+     * @param monitor Monitor for synchronization.
+     * @param segments Segments of the Petri net.
+     * @param threads Initial number of threads of each segment.
+     * @param minThreads Minimum number of threads of each segment.
+     * @param maxThreads Maximum number of threads of each segment.
+     * @param period Time, in milliseconds, between two decisions.
+     * @param virtual True to run the segments on virtual threads if the JVM supports them.
+     */
+    public SegmentScaler(MonitorInterface monitor, Segment[] segments, List<Integer> threads, int minThreads, int maxThreads,
+                         long period, boolean virtual) {
+        this.monitor = monitor;
+        this.segments = segments;
+        this.transitions = Arrays.stream(segments).map(Segment::getTransitions).toArray(int[][]::new);
+        this.threads = new int[segments.length];
+        this.retiring = new AtomicInteger[segments.length];
+        this.created = new int[segments.length];
+        this.hold = new int[segments.length];
+        this.started = new ArrayList<>();
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.period = period;
+        this.virtual = virtual;
+
+        for (int s = 0; s < segments.length; s++) {
+            this.threads[s] = Math.min(Math.max(threads.get(s), minThreads), maxThreads);
+            this.retiring[s] = new AtomicInteger(0);
+        }
+    }
+
+    /**
+     * Starts the threads of the segments and adjusts them every period until the monitor is interrupted or the scaler
+     * thread is interrupted. Then waits until the threads of the segments are finished.
+     */
+    @Override
+    public void run() {
+        for (int s = 0; s < segments.length; s++)
+            for (int i = 0; i < threads[s]; i++)
+                startThread(s);
+
+        try {
+            scale();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            for (Thread thread : started)
+                thread.interrupt();
+
+            for (Thread thread : started) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            Logger.logSystem(String.format("SCALING -> final threads %s", Arrays.toString(threads)));
+        }
+    }
+
+    /**
+     * Samples the segments and changes their threads every period until the monitor is interrupted.
+     * @throws InterruptedException If the scaler thread is interrupted.
+     */
+    private void scale() throws InterruptedException {
+        long[] workTime = new long[segments.length];
+        long lastTime = System.nanoTime();
+        long lastInvariants = invariants();
+        double lastRate = -1;
+        int changed = -1;
+        int change = 0;
+
+        for (int s = 0; s < segments.length; s++)
+            workTime[s] = segments[s].getWorkTime();
+
+        while (!monitor.isInterrupted()) {
+            double[] waiters = new double[segments.length];
+
+            for (int i = 0; i < SAMPLES && !monitor.isInterrupted(); i++) {
+                TimeUnit.MILLISECONDS.sleep(period / SAMPLES);
+
+                int[] count = monitor.getWaitersCount();
+
+                for (int s = 0; s < segments.length; s++)
+                    for (int t : transitions[s])
+                        waiters[s] += (double) count[t - 1] / SAMPLES;
+            }
+
+            long now = System.nanoTime();
+            long invariants = invariants();
+            double rate = (invariants - lastInvariants) * 1e9 / (now - lastTime);
+            double[] busy = new double[segments.length];
+
+            for (int s = 0; s < segments.length; s++) {
+                long time = segments[s].getWorkTime();
+
+                busy[s] = (double) (time - workTime[s]) / ((now - lastTime) * threads[s]);
+                workTime[s] = time;
+            }
+
+            for (int s = 0; s < segments.length; s++)
+                if (hold[s] > 0)
+                    hold[s]--;
+
+            if (changed >= 0 && rate < lastRate * (1 - LOSS)) {
+                resize(changed, -change, rate, waiters[changed], busy[changed], "undone");
+                hold[changed] = HOLD_PERIODS;
+                changed = -1;
+            }
+            else {
+                changed = -1;
+
+                for (int s = 0; s < segments.length && changed < 0; s++) {
+                    if (hold[s] > 0)
+                        continue;
+
+                    if (busy[s] >= BUSY && waiters[s] < IDLE - 1 && threads[s] < maxThreads)
+                        change = 1;
+                    else if (waiters[s] >= IDLE && threads[s] > minThreads)
+                        change = -1;
+                    else
+                        continue;
+
+                    changed = s;
+                    resize(s, change, rate, waiters[s], busy[s], change > 0 ? "busy" : "idle");
+                }
+            }
+
+            lastRate = rate;
+            lastTime = now;
+            lastInvariants = invariants;
+        }
+    }
+
+    /**
+     * Changes the threads of a segment and logs the change.
+     * @param segment Index of the segment.
+     * @param change Threads to add, or to remove if negative.
+     * @param rate Invariants completed per second in the last period.
+     * @param waiters Average waiters of the segment in the last period.
+     * @param busy Fraction of the time the threads of the segment worked in the last period.
+     * @param reason Reason of the change.
+     */
+    private void resize(int segment, int change, double rate, double waiters, double busy, String reason) {
+        Logger.logSystem(String.format("SCALING -> [Segment %s] %d -> %d threads, %s (%.1f invariants/s, %.2f waiters, %.0f%% working, %.1fms per work)",
+                                       segments[segment].getName(), threads[segment], threads[segment] + change, reason, rate, waiters,
+                                       busy * 100, serviceTime(segment)));
+
+        threads[segment] += change;
+
+        for (int i = 0; i < change; i++) {
+            if (retiring[segment].getAndUpdate(r -> r > 0 ? r - 1 : 0) > 0)
+                continue;
+
+            startThread(segment);
+        }
+
+        for (int i = 0; i < -change; i++)
+            retiring[segment].incrementAndGet();
+    }
+
+    /**
+     * Returns the average time the artists of a segment take to work.
+     * @param segment Index of the segment.
+     * @return Time in milliseconds, 0 if the artists have not worked.
+     */
+    private double serviceTime(int segment) {
+        long works = segments[segment].getWorks();
+
+        return works == 0 ? 0 : segments[segment].getWorkTime() / 1e6 / works;
+    }
+
+    /**
+     * Returns the number of invariants completed.
+     * @return Sum of the cycles of all the invariants.
+     */
+    private long invariants() {
+        return monitor.getInvariantsTransitionsFiredCount().values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    /**
+     * Starts a new thread for the segment passed as argument.
+     * @param segment Index of the segment.
+     */
+    private void startThread(int segment) {
+        Segment s = segments[segment];
+        Thread thread = SegmentThreads.newThread(() -> work(segment), "[Segment " + s.getName() + " - Thread " + created[segment]++ + "]", virtual);
+
+        started.add(thread);
+        thread.start();
+
+        Logger.logSystem(String.format("STARTED -> %-35s", thread.getName()));
+    }
+
+    /**
+     * Fires the transitions of a segment until the monitor is interrupted or the thread is asked to finish.
+     * @param segment Index of the segment.
+     */
+    private void work(int segment) {
+        try {
+            while (!monitor.isInterrupted() && retiring[segment].getAndUpdate(r -> r > 0 ? r - 1 : 0) == 0)
+                segments[segment].fireRound();
+        }
+        finally {
+            Logger.logSystem(String.format("FINISHED -> %-35s", Thread.currentThread().getName()));
+        }
+    }
+}
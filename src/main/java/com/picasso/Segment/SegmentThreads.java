@@ -0,0 +1,72 @@
+package com.picasso.Segment;
+
+import java.lang.reflect.Method;
+
+/**
+ * SegmentThreads class creates the threads running the segments, on virtual threads when the JVM supports them.
+ * Virtual threads are created through reflection, so the program still builds and runs on JVMs without them, falling
+ * back to platform threads. The Monitor parks its waiters with LockSupport and guards its state with ReentrantLocks,
+ * so a virtual thread waiting for a transition or sleeping in an artist releases its carrier.
+ */
+public final class SegmentThreads {
+    // Thread.ofVirtual(), null if the JVM does not support virtual threads
+    private static final Method OF_VIRTUAL;
+    // Thread.Builder.name(String)
+    private static final Method NAME;
+    // Thread.Builder.unstarted(Runnable)
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    /**
+     * Private constructor, the class only has static methods.
+     */
+    private SegmentThreads() {
+    }
+
+    /**
+     * Checks if the JVM supports virtual threads.
+     * @return True  if virtual threads can be created
+     *         False otherwise
+     */
+    public static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates a thread, not started, running the task passed as argument.
+     * @param task Task to run, usually a segment.
+     * @param name Name of the thread.
+     * @param virtual True to create a virtual thread if the JVM supports them.
+     * @return Virtual thread if it was requested and it is supported, platform thread otherwise.
+     */
+    public static Thread newThread(Runnable task, String name, boolean virtual) {
+        if (virtual && isVirtualSupported()) {
+            try {
+                return (Thread) UNSTARTED.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), name), task);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return new Thread(task, name);
+    }
+}